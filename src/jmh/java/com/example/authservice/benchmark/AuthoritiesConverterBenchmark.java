@@ -0,0 +1,58 @@
+package com.example.authservice.benchmark;
+
+import com.example.authservice.config.KeycloakJwtGrantedAuthoritiesConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el converter de authorities original con el que interna authorities
+ * y memoriza la colección por conjunto de roles.
+ *
+ * Para ver la diferencia de asignaciones: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="Authorities -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthoritiesConverterBenchmark {
+
+    @Param({"5", "20", "50"})
+    private int roleCount;
+
+    private Jwt jwt;
+    private LegacyKeycloakJwtGrantedAuthoritiesConverter legacyConverter;
+    private KeycloakJwtGrantedAuthoritiesConverter converter;
+
+    @Setup
+    public void setUp() {
+        jwt = BenchmarkTokens.jwtWithRoles(roleCount);
+        legacyConverter = new LegacyKeycloakJwtGrantedAuthoritiesConverter();
+        converter = new KeycloakJwtGrantedAuthoritiesConverter();
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> legacy() {
+        return legacyConverter.convert(jwt);
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> interned() {
+        return converter.convert(jwt);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.authservice.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Construcción de claves y tokens de prueba para los benchmarks.
+ *
+ * Los tokens imitan a los de Keycloak: roles en realm_access y resource_access,
+ * preferred_username, email y un claim de relleno para controlar el tamaño.
+ */
+final class BenchmarkTokens {
+
+    static final String ISSUER = "http://localhost:8080/realms/master";
+
+    private BenchmarkTokens() {
+    }
+
+    /**
+     * Roles repartidos como en Keycloak: la mitad en realm_access y la otra mitad
+     * en resource_access de un cliente.
+     */
+    static Map<String, Object> realmAccess(int roleCount) {
+        return Map.of("roles", roles("realm-role-", (roleCount + 1) / 2));
+    }
+
+    static Map<String, Object> resourceAccess(int roleCount) {
+        return Map.of("spring-auth-service", Map.of("roles", roles("client-role-", roleCount / 2)));
+    }
+
+    static Jwt jwtWithRoles(int roleCount) {
+        return jwtWithRoles(roleCount, 0);
+    }
+
+    static Jwt jwtWithRoles(int roleCount, int paddingBytes) {
+        Instant now = Instant.now();
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .issuer(ISSUER)
+                .subject("123e4567-e89b-12d3-a456-426614174000")
+                .claim("preferred_username", "johndoe")
+                .claim("email", "john.doe@example.com")
+                .claim("realm_access", realmAccess(roleCount))
+                .claim("resource_access", resourceAccess(roleCount))
+                .claim("padding", padding(paddingBytes))
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .build();
+    }
+
+    static RSAKey generateRsaKey() {
+        try {
+            return new RSAKeyGenerator(2048).keyID("benchmark-key").generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("No se pudo generar la clave RSA", e);
+        }
+    }
+
+    /**
+     * Token firmado con RS256 con la clave indicada.
+     *
+     * @param paddingBytes Tamaño del claim de relleno, para simular tokens más grandes
+     */
+    static String signedToken(RSAKey rsaKey, int roleCount, int paddingBytes) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("123e4567-e89b-12d3-a456-426614174000")
+                .claim("preferred_username", "johndoe")
+                .claim("email", "john.doe@example.com")
+                .claim("realm_access", realmAccess(roleCount))
+                .claim("resource_access", resourceAccess(roleCount))
+                .claim("padding", padding(paddingBytes))
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(3600)))
+                .build();
+        try {
+            SignedJWT jwt = new SignedJWT(
+                    new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(rsaKey.getKeyID()).build(), claims);
+            jwt.sign(new RSASSASigner(rsaKey));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("No se pudo firmar el token", e);
+        }
+    }
+
+    private static List<String> roles(String prefix, int count) {
+        List<String> roles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            roles.add(prefix + i);
+        }
+        return roles;
+    }
+
+    private static String padding(int bytes) {
+        return "x".repeat(bytes);
+    }
+}
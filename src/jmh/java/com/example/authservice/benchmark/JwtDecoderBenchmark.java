@@ -0,0 +1,66 @@
+package com.example.authservice.benchmark;
+
+import com.example.authservice.config.CachingJwtDecoder;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de decodificar y validar un token firmado (firma RS256 + validación de claims),
+ * con y sin la caché de tokens verificados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtDecoderBenchmark {
+
+    @Param({"5", "20", "50"})
+    private int roleCount;
+
+    @Param({"0", "1024", "4096"})
+    private int tokenPaddingBytes;
+
+    private String token;
+    private NimbusJwtDecoder decoder;
+    private CachingJwtDecoder cachingDecoder;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        RSAKey rsaKey = BenchmarkTokens.generateRsaKey();
+        token = BenchmarkTokens.signedToken(rsaKey, roleCount, tokenPaddingBytes);
+
+        decoder = NimbusJwtDecoder.withPublicKey(rsaKey.toRSAPublicKey()).build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(BenchmarkTokens.ISSUER));
+        cachingDecoder = new CachingJwtDecoder(decoder, 10_000, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return decoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt decodeCached() {
+        return cachingDecoder.decode(token);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.authservice.benchmark;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Copia de la implementación original de KeycloakJwtGrantedAuthoritiesConverter
+ * (una SimpleGrantedAuthority nueva por rol y por petición), usada como línea base.
+ */
+class LegacyKeycloakJwtGrantedAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    @Override
+    public Collection<GrantedAuthority> convert(@NonNull Jwt jwt) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        
+        Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
+        if (realmAccess != null) {
+            Object rolesObj = realmAccess.get("roles");
+            if (rolesObj instanceof List) {
+                @SuppressWarnings("unchecked")
+                List<String> roles = (List<String>) rolesObj;
+                authorities.addAll(
+                    roles.stream()
+                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                        .collect(Collectors.toList())
+                );
+            }
+        }
+        
+        Map<String, Object> resourceAccess = jwt.getClaimAsMap("resource_access");
+        if (resourceAccess != null) {
+            resourceAccess.values().forEach(resource -> {
+                if (resource instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> resourceMap = (Map<String, Object>) resource;
+                    Object resourceRoles = resourceMap.get("roles");
+                    if (resourceRoles instanceof List) {
+                        @SuppressWarnings("unchecked")
+                        List<String> roles = (List<String>) resourceRoles;
+                        authorities.addAll(
+                            roles.stream()
+                                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                                .collect(Collectors.toList())
+                        );
+                    }
+                }
+            });
+        }
+        
+        return authorities;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.authservice.benchmark;
+
+import com.example.authservice.config.KeycloakAuthenticationToken;
+import com.example.authservice.config.KeycloakClaimsExtractor;
+import com.example.authservice.config.KeycloakJwtAuthenticationConverter;
+import com.example.authservice.config.KeycloakJwtGrantedAuthoritiesConverter;
+import com.example.authservice.dto.ProfileDTO;
+import com.example.authservice.service.ProfileService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de construir el perfil desde la autenticación (/profile y /profile/token-info)
+ * y de serializar el ProfileDTO a JSON.
+ *
+ * La autenticación se construye una vez con KeycloakJwtAuthenticationConverter, como en una
+ * petición real: los claims ya llegan parseados y no entran en la medida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileBenchmark {
+
+    @Param({"5", "20", "50"})
+    private int roleCount;
+
+    @Param({"0", "1024", "4096"})
+    private int tokenPaddingBytes;
+
+    private KeycloakAuthenticationToken authentication;
+    private ProfileService profileService;
+    private ObjectMapper objectMapper;
+    private ProfileDTO profile;
+    private ProfileDTO tokenInfo;
+
+    @Setup
+    public void setUp() {
+        KeycloakJwtAuthenticationConverter converter = new KeycloakJwtAuthenticationConverter(
+                new KeycloakClaimsExtractor(), new KeycloakJwtGrantedAuthoritiesConverter());
+        authentication = (KeycloakAuthenticationToken) converter.convert(
+                BenchmarkTokens.jwtWithRoles(roleCount, tokenPaddingBytes));
+        profileService = new ProfileService();
+        // Misma configuración base que el ObjectMapper de Spring Boot
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        profile = profileService.getProfile(authentication);
+        tokenInfo = profileService.getTokenInfo(authentication);
+    }
+
+    @Benchmark
+    public ProfileDTO getProfile() {
+        return profileService.getProfile(authentication);
+    }
+
+    @Benchmark
+    public ProfileDTO getTokenInfo() {
+        return profileService.getTokenInfo(authentication);
+    }
+
+    @Benchmark
+    public byte[] serializeProfile() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(profile);
+    }
+
+    @Benchmark
+    public byte[] serializeTokenInfo() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(tokenInfo);
+    }
+}
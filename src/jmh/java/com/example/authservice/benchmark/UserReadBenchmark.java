@@ -0,0 +1,143 @@
+package com.example.authservice.benchmark;
+
+import com.example.authservice.AuthServiceApplication;
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste por petición de las lecturas de usuarios (GET /users/{id} sin caché y una página
+ * de GET /users) sobre la aplicación con el perfil "test" (H2 en memoria):
+ * - entity*: transacción de lectura/escritura, entidades gestionadas copiadas a UserDTO
+ *   (snapshot en el persistence context y dirty checking en el commit)
+ * - projection*: transacción de solo lectura y proyección directa a UserDTO (UserRepository)
+ *
+ * Para ver las asignaciones por petición: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="UserRead -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserReadBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int PAGE_SIZE = 50;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+    private EntityManager entityManager;
+    private TransactionTemplate readWriteTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private List<Long> ids;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthServiceApplication.class).run(
+                "--spring.profiles.active=test",
+                "--server.port=0",
+                "--keycloak.reconciliation.cron=-",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.authservice=WARN");
+        userRepository = context.getBean(UserRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .username("bench-" + i)
+                    .email("bench-" + i + "@example.com")
+                    .fullName("Usuario " + i)
+                    .build());
+        }
+        ids = userRepository.saveAll(users).stream().map(User::getId).toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDTO entityById() {
+        Long id = randomId();
+        return readWriteTransaction.execute(status -> userRepository.findById(id).map(UserReadBenchmark::toDTO)
+                .orElseThrow());
+    }
+
+    @Benchmark
+    public UserDTO projectionById() {
+        Long id = randomId();
+        return readOnlyTransaction.execute(status -> userRepository.findDtoById(id).orElseThrow());
+    }
+
+    @Benchmark
+    public List<UserDTO> entityPage() {
+        long afterId = randomPageStart();
+        // Misma consulta keyset que findPageAfter, pero cargando entidades
+        return readWriteTransaction.execute(status -> entityManager
+                .createQuery("select u from User u where u.id > :afterId order by u.id", User.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(PAGE_SIZE)
+                .getResultStream()
+                .map(UserReadBenchmark::toDTO)
+                .toList());
+    }
+
+    @Benchmark
+    public List<UserDTO> projectionPage() {
+        long afterId = randomPageStart();
+        return readOnlyTransaction.execute(status -> userRepository.findPageAfter(afterId, Limit.of(PAGE_SIZE)));
+    }
+
+    private long randomPageStart() {
+        return ids.get(ThreadLocalRandom.current().nextInt(USERS / PAGE_SIZE) * PAGE_SIZE) - 1;
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    /**
+     * Copia de la conversión que hacía UserService antes de las proyecciones.
+     */
+    private static UserDTO toDTO(User user) {
+        return UserDTO.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .fullName(user.getFullName())
+                .active(user.getActive())
+                .provisioningStatus(user.getProvisioningStatus())
+                .build();
+    }
+}
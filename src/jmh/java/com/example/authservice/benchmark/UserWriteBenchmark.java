@@ -0,0 +1,242 @@
+package com.example.authservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Filas por segundo al insertar y actualizar usuarios, antes y después de la secuencia
+ * pooled (V5) y de PATCH /users/bulk, sobre H2 en memoria.
+ *
+ * - insertIdentity: un INSERT con clave generada por fila, como hacía Hibernate con IDENTITY
+ * - insertSequenceBatched: IDs reservados de users_seq por bloques e INSERT en batches JDBC
+ * - updatePerRow: un UPDATE por usuario, como una secuencia de PUT /users/{id}
+ * - updateBatched: el mismo UPDATE en batches JDBC (cambios por usuario de PATCH /users/bulk)
+ * - deactivateSetBased: una sola sentencia "where id in (...)" (ids + active de PATCH /users/bulk)
+ *
+ * H2 en memoria no tiene latencia de red. roundTripMicros simula el viaje de ida y vuelta
+ * a la BD de cada ejecución (una sentencia, un batch o una consulta), que es lo que los
+ * batches ahorran contra PostgreSQL: con 0 solo se compara el trabajo de la BD.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserWriteBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final int SEED_ROWS = 10_000;
+    private static final int BATCH_SIZE = 50;
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final String INSERT_SQL =
+            "insert into users (username, email, full_name, active, created_at) values (?, ?, ?, ?, ?)";
+    private static final String INSERT_WITH_ID_SQL =
+            "insert into users (id, username, email, full_name, active, created_at) values (?, ?, ?, ?, ?, ?)";
+    private static final String PATCH_SQL =
+            "update users set email = coalesce(?, email), full_name = coalesce(?, full_name), " +
+            "active = coalesce(?, active), updated_at = ? where id = ?";
+
+    @Param({"0", "200"})
+    private long roundTripMicros;
+
+    private Connection connection;
+    private long inserted;
+    private int round;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:user-write-benchmark;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists users");
+            statement.execute("drop sequence if exists users_seq");
+            // Los IDs del seed (IDENTITY) quedan por debajo del primer bloque de la secuencia
+            statement.execute("create sequence users_seq start with " + (2 * SEED_ROWS) + " increment by " + ALLOCATION_SIZE);
+            statement.execute("create table users (" +
+                    "id bigint generated by default as identity primary key, " +
+                    "username varchar(50) not null unique, " +
+                    "email varchar(255) not null unique, " +
+                    "full_name varchar(100), " +
+                    "active boolean not null, " +
+                    "created_at timestamp not null, " +
+                    "updated_at timestamp)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+            for (int i = 0; i < SEED_ROWS; i++) {
+                setUser(insert, 1, "seed-" + i);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long insertIdentity() throws SQLException {
+        long lastId = 0;
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                setUser(insert, 1, "user-" + inserted++);
+                insert.executeUpdate();
+                roundTrip();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    lastId = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long insertSequenceBatched() throws SQLException {
+        long[] ids = new long[ROWS];
+        try (PreparedStatement next = connection.prepareStatement(
+                "select next value for users_seq from system_range(1, ?)")) {
+            next.setInt(1, (ROWS + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE);
+            int i = 0;
+            roundTrip();
+            try (ResultSet rs = next.executeQuery()) {
+                while (rs.next()) {
+                    long high = rs.getLong(1);
+                    for (long id = high - ALLOCATION_SIZE + 1; id <= high && i < ROWS; id++) {
+                        ids[i++] = id;
+                    }
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_WITH_ID_SQL)) {
+            for (int i = 0; i < ROWS; i++) {
+                insert.setLong(1, ids[i]);
+                setUser(insert, 2, "user-" + inserted++);
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    roundTrip();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return ids[ROWS - 1];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long updatePerRow() throws SQLException {
+        long updated = 0;
+        try (PreparedStatement update = connection.prepareStatement(PATCH_SQL)) {
+            long first = nextRange();
+            for (int i = 0; i < ROWS; i++) {
+                setPatch(update, first + i);
+                updated += update.executeUpdate();
+                roundTrip();
+            }
+        }
+        connection.commit();
+        return updated;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long updateBatched() throws SQLException {
+        long updated = 0;
+        try (PreparedStatement update = connection.prepareStatement(PATCH_SQL)) {
+            long first = nextRange();
+            for (int i = 0; i < ROWS; i++) {
+                setPatch(update, first + i);
+                update.addBatch();
+            }
+            for (int count : update.executeBatch()) {
+                updated += count;
+            }
+            roundTrip();
+        }
+        connection.commit();
+        return updated;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long deactivateSetBased() throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(ROWS, "?"));
+        long updated;
+        try (PreparedStatement update = connection.prepareStatement(
+                "update users set active = ?, updated_at = ? where id in (" + placeholders + ")")) {
+            update.setBoolean(1, round % 2 == 0);
+            update.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            long first = nextRange();
+            for (int i = 0; i < ROWS; i++) {
+                update.setLong(3 + i, first + i);
+            }
+            updated = update.executeUpdate();
+            roundTrip();
+        }
+        connection.commit();
+        return updated;
+    }
+
+    private void roundTrip() {
+        if (roundTripMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        }
+    }
+
+    /**
+     * Primer ID de un rango de ROWS usuarios del seed, distinto en cada invocación.
+     */
+    private long nextRange() {
+        return 1 + (long) (round++ % (SEED_ROWS / ROWS)) * ROWS;
+    }
+
+    private void setPatch(PreparedStatement update, long id) throws SQLException {
+        update.setString(1, null);
+        update.setString(2, "Nombre " + round);
+        update.setObject(3, null, Types.BOOLEAN);
+        update.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+        update.setLong(5, id);
+    }
+
+    private static void setUser(PreparedStatement insert, int firstParameter, String username) throws SQLException {
+        insert.setString(firstParameter, username);
+        insert.setString(firstParameter + 1, username + "@example.com");
+        insert.setString(firstParameter + 2, "Usuario " + username);
+        insert.setBoolean(firstParameter + 3, true);
+        insert.setTimestamp(firstParameter + 4, Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
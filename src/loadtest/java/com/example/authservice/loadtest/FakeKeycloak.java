@@ -0,0 +1,357 @@
+package com.example.authservice.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keycloak simulado en proceso (com.sun.net.httpserver) para las pruebas de carga.
+ *
+ * Implementa solo los endpoints que usa el servicio:
+ * - Token (client_credentials) y JWK Set del realm: KeycloakAdminTokenManager y PrefetchingJwkSource
+ * - Admin API de usuarios y roles, y Partial Import: KeycloakService
+ *
+ * Los tokens se firman con RS256 con una clave RSA generada al arrancar (issueToken
+ * emite además tokens de usuario para las peticiones de los escenarios). Los usuarios se
+ * guardan en memoria, ordenados por username como en Keycloak. Cada petición espera
+ * latency ± jitter antes de responder, para simular un Keycloak remoto.
+ */
+public final class FakeKeycloak implements AutoCloseable {
+
+    public static final String REALM = "master";
+    public static final String CLIENT_ID = "spring-auth-service";
+
+    private static final Pattern USER_PATH = Pattern.compile("/admin/realms/[^/]+/users/([^/]+)");
+    private static final Pattern ROLE_MAPPINGS_PATH =
+            Pattern.compile("/admin/realms/[^/]+/users/([^/]+)/role-mappings/realm");
+    private static final Pattern ROLE_PATH = Pattern.compile("/admin/realms/[^/]+/roles/([^/]+)");
+    private static final List<String> REALM_ROLES = List.of("USER", "ADMIN");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RSAKey signingKey;
+    private final Duration latency;
+    private final Duration jitter;
+    private final ExecutorService executor;
+    private final HttpServer server;
+    private final Map<String, String> roleIds = new HashMap<>();
+    private final Map<String, Map<String, Object>> usersById = new ConcurrentHashMap<>();
+    private final NavigableMap<String, String> idsByUsername = new ConcurrentSkipListMap<>();
+
+    private FakeKeycloak(Duration latency, Duration jitter, int threads) throws IOException {
+        this.latency = latency;
+        this.jitter = jitter;
+        try {
+            this.signingKey = new RSAKeyGenerator(2048).keyID("loadtest-key").generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("No se pudo generar la clave RSA", e);
+        }
+        REALM_ROLES.forEach(role -> roleIds.put(role, UUID.randomUUID().toString()));
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre de localhost.
+     *
+     * @param threads hilos que atienden peticiones (con latencia simulada, acotan la concurrencia)
+     */
+    public static FakeKeycloak start(Duration latency, Duration jitter, int threads) throws IOException {
+        FakeKeycloak keycloak = new FakeKeycloak(latency, jitter, threads);
+        keycloak.server.start();
+        return keycloak;
+    }
+
+    /**
+     * URL base (keycloak.url).
+     */
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Issuer de los tokens (spring.security.oauth2.resourceserver.jwt.issuer-uri).
+     */
+    public String issuer() {
+        return baseUrl() + "/realms/" + REALM;
+    }
+
+    public int userCount() {
+        return usersById.size();
+    }
+
+    /**
+     * Emite un access token firmado como los de Keycloak (roles en realm_access).
+     */
+    public String issueToken(String subject, String username, List<String> realmRoles, Duration lifetime) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer())
+                .subject(subject)
+                .audience("account")
+                .claim("azp", CLIENT_ID)
+                .claim("typ", "Bearer")
+                .claim("preferred_username", username)
+                .claim("email", username + "@loadtest.local")
+                .claim("realm_access", Map.of("roles", realmRoles))
+                .claim("scope", "openid profile email")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(lifetime)))
+                .jwtID(UUID.randomUUID().toString())
+                .build();
+        try {
+            SignedJWT jwt = new SignedJWT(
+                    new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+            jwt.sign(new RSASSASigner(signingKey));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("No se pudo firmar el token", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            simulateLatency();
+            route(exchange);
+        } catch (RuntimeException e) {
+            send(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String realmPath = "/realms/" + REALM;
+        String adminPath = "/admin/realms/" + REALM;
+
+        if (path.equals(realmPath + "/protocol/openid-connect/token") && method.equals("POST")) {
+            token(exchange);
+        } else if (path.equals(realmPath + "/protocol/openid-connect/certs")) {
+            send(exchange, 200, new JWKSet(signingKey.toPublicJWK()).toJSONObject());
+        } else if (path.equals(realmPath + "/.well-known/openid-configuration")) {
+            send(exchange, 200, Map.of(
+                    "issuer", issuer(),
+                    "jwks_uri", issuer() + "/protocol/openid-connect/certs",
+                    "token_endpoint", issuer() + "/protocol/openid-connect/token"));
+        } else if (!path.startsWith(adminPath + "/")) {
+            send(exchange, 404, Map.of("error", "Not found"));
+        } else if (!exchange.getRequestHeaders().getOrDefault("Authorization", List.of()).stream()
+                .anyMatch(value -> value.startsWith("Bearer "))) {
+            send(exchange, 401, Map.of("error", "HTTP 401 Unauthorized"));
+        } else if (path.equals(adminPath + "/users") && method.equals("POST")) {
+            createUser(exchange);
+        } else if (path.equals(adminPath + "/users") && method.equals("GET")) {
+            listUsers(exchange, query);
+        } else if (path.equals(adminPath + "/partialImport") && method.equals("POST")) {
+            partialImport(exchange);
+        } else if (ROLE_MAPPINGS_PATH.matcher(path).matches() && method.equals("POST")) {
+            Matcher matcher = ROLE_MAPPINGS_PATH.matcher(path);
+            matcher.matches();
+            send(exchange, usersById.containsKey(matcher.group(1)) ? 204 : 404, null);
+        } else if (USER_PATH.matcher(path).matches() && method.equals("DELETE")) {
+            Matcher matcher = USER_PATH.matcher(path);
+            matcher.matches();
+            Map<String, Object> removed = usersById.remove(matcher.group(1));
+            if (removed != null) {
+                idsByUsername.remove((String) removed.get("username"));
+            }
+            send(exchange, removed != null ? 204 : 404, null);
+        } else if (ROLE_PATH.matcher(path).matches() && method.equals("GET")) {
+            Matcher matcher = ROLE_PATH.matcher(path);
+            matcher.matches();
+            String roleId = roleIds.get(matcher.group(1));
+            if (roleId == null) {
+                send(exchange, 404, Map.of("error", "Could not find role"));
+            } else {
+                send(exchange, 200, Map.of("id", roleId, "name", matcher.group(1)));
+            }
+        } else {
+            send(exchange, 404, Map.of("error", "Not found"));
+        }
+    }
+
+    private void token(HttpExchange exchange) throws IOException {
+        Map<String, String> form = parseQuery(new String(exchange.getRequestBody().readAllBytes(),
+                StandardCharsets.UTF_8));
+        if (!"client_credentials".equals(form.get("grant_type"))) {
+            send(exchange, 400, Map.of("error", "unsupported_grant_type"));
+            return;
+        }
+        Duration lifetime = Duration.ofMinutes(5);
+        String clientId = form.getOrDefault("client_id", CLIENT_ID);
+        send(exchange, 200, Map.of(
+                "access_token", issueToken(UUID.randomUUID().toString(), "service-account-" + clientId,
+                        List.of("ADMIN"), lifetime),
+                "expires_in", lifetime.toSeconds(),
+                "token_type", "Bearer"));
+    }
+
+    private void createUser(HttpExchange exchange) throws IOException {
+        Map<String, Object> user = readBody(exchange, new TypeReference<>() {});
+        String id = addUser(user);
+        if (id == null) {
+            send(exchange, 409, Map.of("errorMessage", "User exists with same username"));
+            return;
+        }
+        exchange.getResponseHeaders().add("Location", baseUrl() + "/admin/realms/" + REALM + "/users/" + id);
+        send(exchange, 201, null);
+    }
+
+    private void listUsers(HttpExchange exchange, Map<String, String> query) throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        String username = query.get("username");
+        if (username != null) {
+            String id = idsByUsername.get(username.toLowerCase());
+            if (id != null && usersById.containsKey(id)) {
+                result.add(usersById.get(id));
+            }
+        } else {
+            int first = Integer.parseInt(query.getOrDefault("first", "0"));
+            int max = Integer.parseInt(query.getOrDefault("max", "100"));
+            idsByUsername.values().stream()
+                    .skip(first)
+                    .limit(max)
+                    .map(usersById::get)
+                    .filter(Objects::nonNull)
+                    .forEach(result::add);
+        }
+        send(exchange, 200, result);
+    }
+
+    private void partialImport(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = readBody(exchange, new TypeReference<>() {});
+        List<Map<String, Object>> results = new ArrayList<>();
+        int added = 0;
+        int skipped = 0;
+        if (body.get("users") instanceof List<?> users) {
+            for (Object item : users) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> user = (Map<String, Object>) item;
+                String username = String.valueOf(user.get("username")).toLowerCase();
+                String id = addUser(user);
+                String action = "ADDED";
+                if (id != null) {
+                    added++;
+                } else {
+                    skipped++;
+                    action = "SKIPPED";
+                    id = idsByUsername.get(username);
+                }
+                results.add(Map.of("action", action, "resourceType", "USER", "resourceName", username,
+                        "id", String.valueOf(id)));
+            }
+        }
+        send(exchange, 200, Map.of("added", added, "skipped", skipped, "overwritten", 0, "results", results));
+    }
+
+    /**
+     * @return el ID del usuario creado, o null si el username ya existe
+     */
+    private String addUser(Map<String, Object> representation) {
+        String username = String.valueOf(representation.get("username")).toLowerCase();
+        String id = UUID.randomUUID().toString();
+        if (idsByUsername.putIfAbsent(username, id) != null) {
+            return null;
+        }
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", id);
+        user.put("username", username);
+        user.put("email", representation.get("email"));
+        user.put("firstName", representation.get("firstName"));
+        user.put("lastName", representation.get("lastName"));
+        user.put("enabled", representation.getOrDefault("enabled", true));
+        user.put("createdTimestamp", System.currentTimeMillis());
+        usersById.put(id, user);
+        return id;
+    }
+
+    private void simulateLatency() {
+        long nanos = latency.toNanos();
+        if (!jitter.isZero()) {
+            nanos += ThreadLocalRandom.current().nextLong(-jitter.toNanos(), jitter.toNanos() + 1);
+        }
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private <T> T readBody(HttpExchange exchange, TypeReference<T> type) throws IOException {
+        return objectMapper.readValue(exchange.getRequestBody(), type);
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
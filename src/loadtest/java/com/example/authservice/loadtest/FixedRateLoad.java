@@ -0,0 +1,133 @@
+package com.example.authservice.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Generador de carga a ritmo fijo (modelo abierto) con latencias en HdrHistogram.
+ *
+ * Cada petición tiene una hora de envío prevista (inicio + i / rate) y la latencia se mide
+ * desde esa hora, no desde el envío real: si el servicio se atasca y el generador se retrasa,
+ * la espera también cuenta (corrección de la "coordinated omission"). Las peticiones del
+ * calentamiento se envían pero no se miden.
+ */
+final class FixedRateLoad {
+
+    /**
+     * Latencia máxima registrable; las mayores se registran con este valor.
+     */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Escenario: nombre y fábrica de peticiones (una nueva por envío).
+     */
+    record Scenario(String name, Supplier<HttpRequest> requests) {
+    }
+
+    /**
+     * Resultado de un escenario (se serializa tal cual en el JSON de salida).
+     *
+     * @param throughput respuestas por segundo durante la ventana de medida
+     * @param latencyMillis percentiles p50, p90, p99, p999, máximo y media
+     * @param statusCodes respuestas por código HTTP
+     * @param errors peticiones sin respuesta (timeout, conexión rechazada...)
+     */
+    record Result(String scenario, int targetRate, double durationSeconds, long requests, long successes,
+                  long failures, long errors, double throughput, Map<String, Double> latencyMillis,
+                  Map<Integer, Long> statusCodes) {
+    }
+
+    private FixedRateLoad() {
+    }
+
+    static Result run(Scenario scenario, HttpClient client, int rate, Duration warmup, Duration duration) {
+        Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+        LongAdder errors = new LongAdder();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger measuredInFlight = new AtomicInteger();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended >= measureFrom;
+            inFlight.incrementAndGet();
+            if (measured) {
+                measuredInFlight.incrementAndGet();
+            }
+            client.sendAsync(scenario.requests().get(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (measured) {
+                            histogram.recordValue(Math.min(System.nanoTime() - intended, HIGHEST_TRACKABLE_NANOS));
+                            if (error != null) {
+                                errors.increment();
+                            } else {
+                                statusCodes.computeIfAbsent(response.statusCode(), code -> new LongAdder()).increment();
+                            }
+                            measuredInFlight.decrementAndGet();
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        // Las que no respondieron a tiempo cuentan como error con la latencia máxima
+        for (int i = measuredInFlight.get(); i > 0; i--) {
+            histogram.recordValue(HIGHEST_TRACKABLE_NANOS);
+            errors.increment();
+        }
+
+        Map<Integer, Long> codes = new TreeMap<>();
+        statusCodes.forEach((code, count) -> codes.put(code, count.sum()));
+        long successes = codes.entrySet().stream()
+                .filter(entry -> entry.getKey() >= 200 && entry.getKey() < 300)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        long responses = codes.values().stream().mapToLong(Long::longValue).sum();
+        double seconds = duration.toNanos() / 1e9;
+
+        Map<String, Double> latency = new LinkedHashMap<>();
+        latency.put("p50", millis(histogram.getValueAtPercentile(50)));
+        latency.put("p90", millis(histogram.getValueAtPercentile(90)));
+        latency.put("p99", millis(histogram.getValueAtPercentile(99)));
+        latency.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        latency.put("max", millis(histogram.getMaxValue()));
+        latency.put("mean", histogram.getMean() / 1e6);
+
+        return new Result(scenario.name(), rate, seconds, histogram.getTotalCount(), successes,
+                responses - successes, errors.sum(), responses / seconds, latency, codes);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.authservice.loadtest;
+
+import com.example.authservice.AuthServiceApplication;
+import com.example.authservice.loadtest.FixedRateLoad.Result;
+import com.example.authservice.loadtest.FixedRateLoad.Scenario;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pruebas de carga de extremo a extremo contra la aplicación real, con Keycloak simulado.
+ *
+ * Arranca FakeKeycloak y la aplicación (H2 en memoria, puerto libre) apuntando a él, da de alta
+ * usuarios con POST /users/import y ejecuta cada escenario a ritmo fijo (FixedRateLoad):
+ * - profile: GET /profile con tokens de loadtest.token-count usuarios distintos
+ * - get-user: GET /users/{id} de un usuario aleatorio (ADMIN)
+ * - create-user: POST /users (ADMIN), con aprovisionamiento en el Keycloak simulado
+ *
+ * El resultado (throughput y percentiles de latencia por escenario) se escribe como JSON en
+ * loadtest.output. Parámetros (propiedades de sistema, ver perfil Maven "loadtest"):
+ * loadtest.scenarios, loadtest.rate, loadtest.warmup, loadtest.duration, loadtest.seed-users,
+ * loadtest.token-count, loadtest.keycloak-latency, loadtest.keycloak-jitter y loadtest.keycloak-threads.
+ */
+public final class LoadTest {
+
+    private static final Duration TOKEN_LIFETIME = Duration.ofHours(2);
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final AtomicLong createdUsers = new AtomicLong();
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        List<String> scenarioNames = List.of(property("loadtest.scenarios", "profile,get-user,create-user").split(","));
+        int rate = Integer.parseInt(property("loadtest.rate", "200"));
+        Duration warmup = duration("loadtest.warmup", "10s");
+        Duration duration = duration("loadtest.duration", "30s");
+        int seedUsers = Integer.parseInt(property("loadtest.seed-users", "1000"));
+        int tokenCount = Integer.parseInt(property("loadtest.token-count", "100"));
+        Duration keycloakLatency = duration("loadtest.keycloak-latency", "20ms");
+        Duration keycloakJitter = duration("loadtest.keycloak-jitter", "5ms");
+        int keycloakThreads = Integer.parseInt(property("loadtest.keycloak-threads", "64"));
+        File output = new File(property("loadtest.output", "target/loadtest-result.json"));
+
+        try (FakeKeycloak keycloak = FakeKeycloak.start(keycloakLatency, keycloakJitter, keycloakThreads);
+             ConfigurableApplicationContext app = startApplication(keycloak)) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port + "/api/v1";
+
+            String adminToken = keycloak.issueToken("loadtest-admin", "loadtest-admin", List.of("ADMIN", "USER"),
+                    TOKEN_LIFETIME);
+            List<String> userTokens = new ArrayList<>(tokenCount);
+            for (int i = 0; i < tokenCount; i++) {
+                userTokens.add(keycloak.issueToken("loadtest-user-" + i, "loadtest-user-" + i, List.of("USER"),
+                        TOKEN_LIFETIME));
+            }
+            List<Long> userIds = seedUsers(baseUrl, adminToken, seedUsers);
+            System.out.printf("Usuarios de prueba: %d (Keycloak simulado: %d)%n", userIds.size(), keycloak.userCount());
+
+            Map<String, Scenario> scenarios = new LinkedHashMap<>();
+            scenarios.put("profile", new Scenario("profile", () -> get(baseUrl + "/profile",
+                    userTokens.get(ThreadLocalRandom.current().nextInt(userTokens.size())))));
+            scenarios.put("get-user", new Scenario("get-user", () -> get(baseUrl + "/users/"
+                    + userIds.get(ThreadLocalRandom.current().nextInt(userIds.size())), adminToken)));
+            scenarios.put("create-user", new Scenario("create-user", () -> createUser(baseUrl, adminToken)));
+
+            List<Result> results = new ArrayList<>();
+            for (String name : scenarioNames) {
+                Scenario scenario = scenarios.get(name.trim());
+                if (scenario == null) {
+                    throw new IllegalArgumentException("Escenario desconocido: " + name + " (disponibles: "
+                            + scenarios.keySet() + ")");
+                }
+                System.out.printf("Escenario %s: %d req/s, calentamiento %s, medida %s%n", scenario.name(), rate,
+                        warmup, duration);
+                Result result = FixedRateLoad.run(scenario, client, rate, warmup, duration);
+                System.out.printf("  throughput %.1f req/s, p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, errores %d%n",
+                        result.throughput(), result.latencyMillis().get("p50"), result.latencyMillis().get("p99"),
+                        result.latencyMillis().get("p999"), result.failures() + result.errors());
+                results.add(result);
+            }
+
+            Map<String, Object> settings = new LinkedHashMap<>();
+            settings.put("rate", rate);
+            settings.put("warmup", warmup.toString());
+            settings.put("duration", duration.toString());
+            settings.put("seedUsers", seedUsers);
+            settings.put("tokenCount", tokenCount);
+            settings.put("keycloakLatency", keycloakLatency.toString());
+            settings.put("keycloakJitter", keycloakJitter.toString());
+            settings.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("timestamp", Instant.now());
+            report.put("settings", settings);
+            report.put("scenarios", results);
+            if (output.getParentFile() != null) {
+                output.getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, report);
+            System.out.println("Resultado en " + output.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Arranca la aplicación con H2 en memoria y Keycloak simulado. Se pasan como argumentos
+     * de línea de comandos para que tengan prioridad sobre application.yml.
+     */
+    private static ConfigurableApplicationContext startApplication(FakeKeycloak keycloak) {
+        return new SpringApplicationBuilder(AuthServiceApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--spring.h2.console.enabled=false",
+                "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + keycloak.issuer(),
+                "--keycloak.url=" + keycloak.baseUrl(),
+                "--keycloak.realm=" + FakeKeycloak.REALM,
+                "--keycloak.client-id=" + FakeKeycloak.CLIENT_ID,
+                "--keycloak.client-secret=loadtest",
+                "--keycloak.reconciliation.cron=-",
+                // Todas las peticiones de un escenario comparten principal: el límite falsearía la medida
+                "--security.rate-limit.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.authservice=WARN",
+                "--logging.level.org.springframework.security=WARN");
+    }
+
+    private List<Long> seedUsers(String baseUrl, String adminToken, int count) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String username = String.format("seed-%07d", i);
+            body.append(objectMapper.writeValueAsString(Map.of(
+                    "username", username,
+                    "email", username + "@loadtest.local",
+                    "fullName", "Seed User " + i))).append('\n');
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/import"))
+                .header("Authorization", "Bearer " + adminToken)
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Alta de usuarios de prueba fallida: " + response.statusCode()
+                    + " " + response.body());
+        }
+        List<Long> ids = new ArrayList<>(count);
+        for (String line : response.body().split("\n")) {
+            if (!line.isBlank()) {
+                JsonNode result = objectMapper.readTree(line);
+                if (result.hasNonNull("id")) {
+                    ids.add(result.get("id").asLong());
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No se creó ningún usuario de prueba: " + response.body());
+        }
+        return ids;
+    }
+
+    private HttpRequest createUser(String baseUrl, String adminToken) {
+        String username = String.format("lt-%d-%d", ProcessHandle.current().pid(), createdUsers.incrementAndGet());
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of(
+                    "username", username,
+                    "email", username + "@loadtest.local",
+                    "fullName", "Load Test"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/users"))
+                .header("Authorization", "Bearer " + adminToken)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest get(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static String property(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    private static Duration duration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(property(name, defaultValue));
+    }
+}
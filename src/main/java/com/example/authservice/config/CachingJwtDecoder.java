@@ -0,0 +1,135 @@
+package com.example.authservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * JwtDecoder que guarda en caché los tokens ya verificados.
+ *
+ * Los clientes reenvían el mismo bearer token muchas veces por minuto; sin caché,
+ * cada petición repite la verificación de la firma RSA y la validación de claims.
+ *
+ * Este decoder:
+ * - Usa como clave el hash SHA-256 del token (no retiene el token original en memoria)
+ * - Mantiene cada Jwt solo hasta su claim "exp" (acotado además por maxTtl)
+ * - Tiene tamaño máximo con desalojo (Caffeine)
+ * - Publica métricas de aciertos/fallos en el MeterRegistry (cache="jwt.decoder")
+ *
+ * Los tokens inválidos nunca se cachean: la excepción del decoder delegado se propaga.
+ * Los validadores que pueden cambiar de resultado durante la vida del token (ej: revocación)
+ * se vuelven a aplicar en cada acierto de caché (hitValidator).
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    static final String CACHE_NAME = "jwt.decoder";
+
+    private final JwtDecoder delegate;
+    private final OAuth2TokenValidator<Jwt> hitValidator;
+    private final Cache<String, Jwt> cache;
+    private final Clock clock;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration maxTtl, MeterRegistry meterRegistry) {
+        this(delegate, jwt -> OAuth2TokenValidatorResult.success(), maximumSize, maxTtl, meterRegistry);
+    }
+
+    public CachingJwtDecoder(JwtDecoder delegate, OAuth2TokenValidator<Jwt> hitValidator,
+                             long maximumSize, Duration maxTtl, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.hitValidator = hitValidator;
+        this.clock = Clock.systemUTC();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilExpiration(maxTtl, clock))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null && isNotExpired(cached)) {
+            OAuth2TokenValidatorResult result = hitValidator.validate(cached);
+            if (result.hasErrors()) {
+                cache.invalidate(key);
+                throw new JwtValidationException(result.getErrors().iterator().next().getDescription(),
+                        result.getErrors());
+            }
+            return cached;
+        }
+
+        Jwt jwt = delegate.decode(token);
+        if (isNotExpired(jwt)) {
+            cache.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    private boolean isNotExpired(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        return expiresAt != null && expiresAt.isAfter(clock.instant());
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashed = digest.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hashed);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 es obligatorio en toda JVM
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Expira cada entrada en el instante "exp" del token, sin superar maxTtl.
+     */
+    private static final class UntilExpiration implements Expiry<String, Jwt> {
+
+        private final long maxTtlNanos;
+        private final Clock clock;
+
+        private UntilExpiration(Duration maxTtl, Clock clock) {
+            this.maxTtlNanos = maxTtl.toNanos();
+            this.clock = clock;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Instant expiresAt = jwt.getExpiresAt();
+            if (expiresAt == null) {
+                return 0;
+            }
+            long remaining = Duration.between(clock.instant(), expiresAt).toNanos();
+            return Math.max(0, Math.min(remaining, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.authservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Pools de hilos dedicados de la aplicación.
+ *
+ * Cada tipo de trabajo tiene su propio pool acotado para que una carga
+ * no pueda dejar sin hilos a las demás.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Executor general de Spring Boot (async de Spring MVC, StreamingResponseBody).
+     * 
+     * Boot deja de crearlo en cuanto existe otro Executor en el contexto, por eso
+     * se declara aquí explícitamente con la configuración spring.task.execution.*.
+     */
+    @Bean(name = {
+        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+    })
+    @Primary
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Pool para validar tokens en paralelo (POST /tokens/validate).
+     * 
+     * La verificación de firmas RSA es trabajo de CPU, por lo que el tamaño por defecto
+     * es el número de procesadores. Si la cola se llena, el hilo de la petición
+     * valida el token él mismo (backpressure en lugar de rechazar).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor tokenValidationExecutor(
+            @Value("${security.jwt.validation.threads:0}") int threads,
+            @Value("${security.jwt.validation.queue-capacity:10000}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("token-validation-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Pool del worker de aprovisionamiento en Keycloak (KeycloakProvisioningWorker).
+     * 
+     * Es trabajo de E/S (llamadas a la Admin API); el tamaño acota la carga
+     * concurrente que este servicio genera sobre Keycloak.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor provisioningExecutor(
+            @Value("${keycloak.provisioning.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("keycloak-provisioning-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Pool para leer en paralelo las páginas de usuarios de Keycloak (KeycloakReconciliationService).
+     *
+     * Es trabajo de E/S; la reconciliación nunca tiene más de "parallelism" páginas en vuelo.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reconciliationExecutor(
+            @Value("${keycloak.reconciliation.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("keycloak-reconciliation-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Hilo de la reconciliación programada (KeycloakReconciliationService): puede durar
+     * minutos y no debe ocupar el scheduler ni uno de los hilos de reconciliationExecutor.
+     *
+     * Sin cola: si ya hay una en curso, la siguiente se descarta.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reconciliationRunExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("keycloak-reconciliation-run-");
+        return executor;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.authservice.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * Readiness según las claves JWK: sin claves no se puede validar ningún token.
+ *
+ * Spring Boot publica ACCEPTING_TRAFFIC al terminar el arranque y pisaría cualquier
+ * REFUSING_TRAFFIC publicado antes, así que la condición se expone como indicador "jwks"
+ * del grupo de readiness: /actuator/health/readiness responde OUT_OF_SERVICE hasta que
+ * PrefetchingJwkSource carga las claves (al arrancar, en el reintento o en un refresco).
+ */
+@RequiredArgsConstructor
+public class JwksHealthIndicator implements HealthIndicator {
+
+    private final PrefetchingJwkSource jwkSource;
+
+    @Override
+    public Health health() {
+        if (!jwkSource.hasKeys()) {
+            return Health.outOfService()
+                    .withDetail("jwkSetUri", jwkSource.getJwkSetUri())
+                    .withDetail("reason", "JWK Set no disponible")
+                    .build();
+        }
+        return Health.up()
+                .withDetail("keys", jwkSource.keyCount())
+                .build();
+    }
+}
@@ -1,10 +1,21 @@
 package com.example.authservice.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.example.authservice.service.TokenRevocationService;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
 
 /**
  * Configuración personalizada del JwtDecoder para resolver el problema
@@ -12,7 +23,10 @@ import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
  * 
  * Este decoder:
  * - Obtiene las claves públicas desde Keycloak usando la red interna de Docker
+ *   (precargadas al arrancar y refrescadas en segundo plano, ver PrefetchingJwkSource)
  * - Valida tokens con el issuer correcto (http://localhost:8080/realms/master)
+ * - Rechaza tokens revocados (ver TokenRevocationService)
+ * - Opcionalmente cachea los tokens ya verificados (security.jwt.cache.*)
  */
 @Configuration
 public class JwtDecoderConfig {
@@ -20,28 +34,71 @@ public class JwtDecoderConfig {
     @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
     private String issuerUri;
 
+    @Value("${security.jwt.jwks.min-refetch-interval:30s}")
+    private Duration jwksMinRefetchInterval;
+
+    @Value("${security.jwt.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${security.jwt.cache.maximum-size:10000}")
+    private long cacheMaximumSize;
+
+    @Value("${security.jwt.cache.max-ttl:5m}")
+    private Duration cacheMaxTtl;
+
     /**
-     * Crea un JwtDecoder personalizado que:
-     * 1. Usa la red interna de Docker para obtener las claves desde Keycloak
-     * 2. Valida tokens con el issuer correcto (desde application.yml)
+     * Fuente de claves JWK que usa la red interna de Docker para obtener las claves desde Keycloak.
      */
     @Bean
-    public JwtDecoder jwtDecoder() {
+    public PrefetchingJwkSource jwkSource(RestTemplate restTemplate,
+                                          MeterRegistry meterRegistry) {
         // Reemplazar localhost con keycloak-service para acceso interno
         // El endpoint correcto para JWK Set es /protocol/openid-connect/certs
         String jwkSetUri = issuerUri.replace("localhost:8080", "keycloak-service:8080") 
                                     + "/protocol/openid-connect/certs";
         
-        // Crear el decoder usando el JWK Set URI interno
-        NimbusJwtDecoder jwtDecoder = NimbusJwtDecoder.withJwkSetUri(jwkSetUri)
-                .build();
+        return new PrefetchingJwkSource(jwkSetUri, restTemplate, jwksMinRefetchInterval, meterRegistry);
+    }
+
+    /**
+     * Indicador "jwks" del grupo de readiness (management.endpoint.health.group.readiness).
+     */
+    @Bean
+    public JwksHealthIndicator jwksHealthIndicator(PrefetchingJwkSource jwkSource) {
+        return new JwksHealthIndicator(jwkSource);
+    }
+
+    /**
+     * Crea un JwtDecoder personalizado que:
+     * 1. Verifica la firma con las claves precargadas de PrefetchingJwkSource
+     * 2. Valida tokens con el issuer correcto (desde application.yml) y que no estén revocados
+     * 3. Si security.jwt.cache.enabled=true, evita repetir la verificación de firma
+     *    para tokens ya validados (ver CachingJwtDecoder)
+     */
+    @Bean
+    public JwtDecoder jwtDecoder(PrefetchingJwkSource jwkSource,
+                                 TokenRevocationService tokenRevocationService,
+                                 MeterRegistry meterRegistry) {
+        // Mismo procesador que arma NimbusJwtDecoder.withJwkSetUri(...), pero con nuestra fuente de claves
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // La validación de claims la hace Spring Security (OAuth2TokenValidator), no Nimbus
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
         
-        // Configurar el issuer esperado (el del token real)
-        jwtDecoder.setJwtValidator(
-            org.springframework.security.oauth2.jwt.JwtValidators.createDefaultWithIssuer(issuerUri)
-        );
+        NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
         
+        // Configurar el issuer esperado (el del token real) y la lista de revocación
+        RevokedTokenValidator revokedTokenValidator = new RevokedTokenValidator(tokenRevocationService);
+        jwtDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+            JwtValidators.createDefaultWithIssuer(issuerUri),
+            revokedTokenValidator
+        ));
+        
+        if (cacheEnabled) {
+            // La revocación puede llegar con el token ya en caché: se comprueba también en cada acierto
+            return new CachingJwtDecoder(jwtDecoder, revokedTokenValidator,
+                    cacheMaximumSize, cacheMaxTtl, meterRegistry);
+        }
         return jwtDecoder;
     }
 }
-
@@ -0,0 +1,299 @@
+package com.example.authservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Pre-validación barata de bearer tokens, antes del parseo JWS y la verificación RSA.
+ *
+ * Durante incidentes los clientes reenvían en masa tokens expirados o basura, y cada uno
+ * pasaba por el parseo completo y la verificación de firma antes de ser rechazado.
+ * Este filtro (registrado antes de BearerTokenAuthenticationFilter) rechaza con 401:
+ * - Estructura inválida (no son tres segmentos base64url, o es demasiado largo)
+ * - "alg" ausente o no permitido
+ * - "kid" ausente
+ * - "exp" claramente vencido o "nbf" claramente futuro (con el mismo margen de reloj
+ *   que la validación real)
+ *
+ * Decodifica header y payload en un buffer reutilizado por hilo y busca las claves
+ * directamente sobre los bytes, sin construir objetos JSON. Ante cualquier duda deja pasar
+ * el token: la validación completa sigue siendo la del JwtDecoder.
+ *
+ * Publica security.jwt.prevalidation.rejected con el tag "reason".
+ */
+@Slf4j
+public class JwtPreValidationFilter extends OncePerRequestFilter {
+
+    /**
+     * Motivos de rechazo (valor del tag "reason" de la métrica).
+     */
+    enum Reason {
+        MALFORMED("malformed"),
+        UNSUPPORTED_ALG("unsupported_alg"),
+        MISSING_KID("missing_kid"),
+        EXPIRED("expired"),
+        NOT_YET_VALID("not_yet_valid");
+
+        private final String tag;
+
+        Reason(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final byte[] ALG = key("alg");
+    private static final byte[] KID = key("kid");
+    private static final byte[] EXP = key("exp");
+    private static final byte[] NBF = key("nbf");
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private final byte[][] allowedAlgorithms;
+    private final long clockSkewSeconds;
+    private final int maxTokenLength;
+    private final Map<Reason, Counter> rejections = new EnumMap<>(Reason.class);
+    private final ThreadLocal<byte[]> buffers;
+
+    public JwtPreValidationFilter(Collection<String> allowedAlgorithms, Duration clockSkew,
+                                  int maxTokenLength, MeterRegistry meterRegistry) {
+        this.allowedAlgorithms = allowedAlgorithms.stream()
+                .map(alg -> alg.getBytes(StandardCharsets.US_ASCII))
+                .toArray(byte[][]::new);
+        this.clockSkewSeconds = clockSkew.toSeconds();
+        this.maxTokenLength = maxTokenLength;
+        this.buffers = ThreadLocal.withInitial(() -> new byte[maxTokenLength]);
+        for (Reason reason : Reason.values()) {
+            rejections.put(reason, Counter.builder("security.jwt.prevalidation.rejected")
+                    .description("Tokens rechazados antes de verificar la firma")
+                    .tag("reason", reason.tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null
+                && authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            Reason reason = check(authorization, BEARER_PREFIX.length(), System.currentTimeMillis() / 1000);
+            if (reason != null) {
+                reject(response, reason);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * @return el motivo de rechazo, o null si el token debe pasar a la validación completa
+     */
+    Reason check(String authorization, int start, long nowEpochSeconds) {
+        int end = authorization.length();
+        if (end - start > maxTokenLength) {
+            return Reason.MALFORMED;
+        }
+        int firstDot = authorization.indexOf('.', start);
+        int secondDot = firstDot < 0 ? -1 : authorization.indexOf('.', firstDot + 1);
+        if (firstDot <= start || secondDot <= firstDot + 1 || secondDot == end - 1
+                || authorization.indexOf('.', secondDot + 1) >= 0) {
+            return Reason.MALFORMED;
+        }
+
+        byte[] buffer = buffers.get();
+
+        // Header: alg y kid
+        int headerLength = Base64Url.decode(authorization, start, firstDot, buffer);
+        if (headerLength < 0) {
+            return Reason.MALFORMED;
+        }
+        int alg = valueStart(buffer, headerLength, ALG);
+        if (alg < 0 || buffer[alg] != '"' || !isAllowedAlgorithm(buffer, alg + 1, headerLength)) {
+            return Reason.UNSUPPORTED_ALG;
+        }
+        int kid = valueStart(buffer, headerLength, KID);
+        if (kid < 0 || buffer[kid] != '"') {
+            return Reason.MISSING_KID;
+        }
+
+        // Payload: exp y nbf
+        int payloadLength = Base64Url.decode(authorization, firstDot + 1, secondDot, buffer);
+        if (payloadLength < 0) {
+            return Reason.MALFORMED;
+        }
+        long exp = numberValue(buffer, payloadLength, EXP);
+        if (exp != ABSENT && exp + clockSkewSeconds < nowEpochSeconds) {
+            return Reason.EXPIRED;
+        }
+        long nbf = numberValue(buffer, payloadLength, NBF);
+        if (nbf != ABSENT && nbf - clockSkewSeconds > nowEpochSeconds) {
+            return Reason.NOT_YET_VALID;
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, Reason reason) {
+        rejections.get(reason).increment();
+        log.debug("Token rechazado en pre-validación: {}", reason.tag);
+        // Mismo formato que BearerTokenAuthenticationEntryPoint (RFC 6750)
+        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE,
+                "Bearer error=\"invalid_token\", error_description=\"" + reason.tag + "\"");
+    }
+
+    private boolean isAllowedAlgorithm(byte[] buffer, int from, int length) {
+        for (byte[] allowed : allowedAlgorithms) {
+            int end = from + allowed.length;
+            if (end < length && buffer[end] == '"'
+                    && Arrays.equals(buffer, from, end, allowed, 0, allowed.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Busca la clave (ya con comillas) en el primer nivel del objeto y devuelve la posición
+     * del primer byte de su valor, o -1 si no está.
+     *
+     * Recorre el JSON llevando la profundidad y saltando el contenido de los strings: una
+     * clave igual dentro de un objeto anidado (ej: un claim "ctx":{"exp":1}) o de un string
+     * no cuenta.
+     */
+    private static int valueStart(byte[] json, int length, byte[] key) {
+        int depth = 0;
+        // Último byte significativo fuera de strings: una clave va detrás de '{' o ','
+        byte previous = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = json[i];
+            if (b == '"') {
+                if (depth == 1 && (previous == '{' || previous == ',') && i + key.length <= length
+                        && Arrays.equals(json, i, i + key.length, key, 0, key.length)) {
+                    int colon = skipWhitespace(json, i + key.length, length);
+                    if (colon < length && json[colon] == ':') {
+                        int value = skipWhitespace(json, colon + 1, length);
+                        return value < length ? value : -1;
+                    }
+                }
+                i = skipString(json, i + 1, length);
+                previous = '"';
+            } else if (b == '{' || b == '[') {
+                depth++;
+                previous = b;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                previous = b;
+            } else if (!isWhitespace(b)) {
+                previous = b;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return la posición de las comillas que cierran el string que empieza en i
+     */
+    private static int skipString(byte[] json, int i, int length) {
+        while (i < length && json[i] != '"') {
+            // Carácter escapado (ej: \" dentro del string)
+            if (json[i] == '\\') {
+                i++;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Lee un número entero o devuelve ABSENT.
+     */
+    private static long numberValue(byte[] json, int length, byte[] key) {
+        int i = valueStart(json, length, key);
+        if (i < 0 || json[i] < '0' || json[i] > '9') {
+            return ABSENT;
+        }
+        long value = 0;
+        for (int digits = 0; i < length && json[i] >= '0' && json[i] <= '9'; i++, digits++) {
+            if (digits == 18) {
+                return ABSENT;
+            }
+            value = value * 10 + (json[i] - '0');
+        }
+        // Decimales o exponente: no se interpreta, lo decide la validación completa
+        if (i < length && (json[i] == '.' || json[i] == 'e' || json[i] == 'E')) {
+            return ABSENT;
+        }
+        return value;
+    }
+
+    private static int skipWhitespace(byte[] json, int i, int length) {
+        while (i < length && isWhitespace(json[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static byte[] key(String name) {
+        return ('"' + name + '"').getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Decodificador base64url (sin relleno) que escribe en un buffer existente.
+     */
+    private static final class Base64Url {
+
+        private static final int[] VALUES = new int[128];
+
+        static {
+            Arrays.fill(VALUES, -1);
+            String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+            for (int i = 0; i < alphabet.length(); i++) {
+                VALUES[alphabet.charAt(i)] = i;
+            }
+        }
+
+        /**
+         * @return bytes escritos, o -1 si el segmento no es base64url válido
+         */
+        static int decode(String source, int from, int to, byte[] target) {
+            int length = 0;
+            int bits = 0;
+            int bitCount = 0;
+            for (int i = from; i < to; i++) {
+                char c = source.charAt(i);
+                int value = c < 128 ? VALUES[c] : -1;
+                if (value < 0) {
+                    return -1;
+                }
+                bits = (bits << 6) | value;
+                bitCount += 6;
+                if (bitCount >= 8) {
+                    bitCount -= 8;
+                    target[length++] = (byte) (bits >> bitCount);
+                }
+            }
+            // Un único carácter sobrante (6 bits) no es base64 válido
+            return bitCount == 6 ? -1 : length;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.authservice.config;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collection;
+
+/**
+ * Autenticación JWT que además transporta los claims de Keycloak ya parseados.
+ *
+ * Extiende JwtAuthenticationToken, por lo que @AuthenticationPrincipal Jwt sigue funcionando;
+ * los controladores que necesiten roles, username o email pueden recibir este token
+ * directamente y evitar volver a recorrer los claims.
+ */
+public class KeycloakAuthenticationToken extends JwtAuthenticationToken {
+
+    private final KeycloakClaims keycloakClaims;
+
+    public KeycloakAuthenticationToken(Jwt jwt, Collection<? extends GrantedAuthority> authorities,
+                                       KeycloakClaims keycloakClaims) {
+        super(jwt, authorities);
+        this.keycloakClaims = keycloakClaims;
+    }
+
+    public KeycloakClaims getKeycloakClaims() {
+        return keycloakClaims;
+    }
+}
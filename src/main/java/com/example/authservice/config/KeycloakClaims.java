@@ -0,0 +1,20 @@
+package com.example.authservice.config;
+
+import java.util.List;
+
+/**
+ * Claims de un token de Keycloak ya parseados una única vez durante la autenticación.
+ *
+ * @param subject        Subject (ID del usuario en Keycloak)
+ * @param username       preferred_username
+ * @param email          email
+ * @param roles          Todos los roles: realm_access.roles, roles directos y resource_access.*.roles
+ * @param authorityRoles Roles que se convierten en authorities: realm_access.roles y resource_access.*.roles
+ */
+public record KeycloakClaims(
+        String subject,
+        String username,
+        String email,
+        List<String> roles,
+        List<String> authorityRoles) {
+}
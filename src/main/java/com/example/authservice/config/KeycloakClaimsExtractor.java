@@ -0,0 +1,77 @@
+package com.example.authservice.config;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extrae en una sola pasada los claims de Keycloak que usan la seguridad y el perfil.
+ *
+ * Antes, realm_access y resource_access se recorrían dos veces por petición a /profile
+ * (una en el converter de authorities y otra en ProfileService). Ahora se parsean aquí
+ * una vez y el resultado viaja en KeycloakAuthenticationToken.
+ *
+ * Soporta diferentes formatos de claims según el Authorization Server:
+ * - Keycloak: realm_access.roles y resource_access.*.roles
+ * - Auth0 / Custom: roles
+ */
+@Component
+public class KeycloakClaimsExtractor {
+
+    public KeycloakClaims extract(Jwt jwt) {
+        Map<String, Object> claims = jwt.getClaims();
+        
+        List<String> authorityRoles = new ArrayList<>();
+        
+        // Roles de realm_access (Keycloak)
+        if (claims.get("realm_access") instanceof Map<?, ?> realmAccess) {
+            addRoles(realmAccess.get("roles"), authorityRoles);
+        }
+        int realmRoleCount = authorityRoles.size();
+        
+        // Roles de resource_access (client roles en Keycloak)
+        if (claims.get("resource_access") instanceof Map<?, ?> resourceAccess) {
+            for (Object resource : resourceAccess.values()) {
+                if (resource instanceof Map<?, ?> resourceMap) {
+                    addRoles(resourceMap.get("roles"), authorityRoles);
+                }
+            }
+        }
+        
+        // Roles directos: solo aparecen en el perfil, no como authorities
+        List<String> roles = authorityRoles;
+        if (claims.get("roles") instanceof List<?> directRoles && !directRoles.isEmpty()) {
+            roles = new ArrayList<>(authorityRoles.size() + directRoles.size());
+            roles.addAll(authorityRoles.subList(0, realmRoleCount));
+            addRoles(directRoles, roles);
+            roles.addAll(authorityRoles.subList(realmRoleCount, authorityRoles.size()));
+        }
+        
+        List<String> immutableAuthorityRoles = Collections.unmodifiableList(authorityRoles);
+        return new KeycloakClaims(
+                jwt.getSubject(),
+                stringClaim(claims, "preferred_username"),
+                stringClaim(claims, "email"),
+                roles == authorityRoles ? immutableAuthorityRoles : Collections.unmodifiableList(roles),
+                immutableAuthorityRoles);
+    }
+
+    private static String stringClaim(Map<String, Object> claims, String name) {
+        Object value = claims.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    private static void addRoles(Object rolesClaim, List<String> roles) {
+        if (rolesClaim instanceof List<?> roleList) {
+            for (Object role : roleList) {
+                if (role instanceof String roleName) {
+                    roles.add(roleName);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.authservice.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Convierte un Jwt validado en un KeycloakAuthenticationToken.
+ *
+ * Los claims se parsean una sola vez (KeycloakClaimsExtractor) y se reutilizan tanto
+ * para las authorities como para ProfileService.
+ */
+@RequiredArgsConstructor
+public class KeycloakJwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+
+    private final KeycloakClaimsExtractor claimsExtractor;
+    private final KeycloakJwtGrantedAuthoritiesConverter authoritiesConverter;
+
+    @Override
+    public AbstractAuthenticationToken convert(@NonNull Jwt jwt) {
+        KeycloakClaims claims = claimsExtractor.extract(jwt);
+        return new KeycloakAuthenticationToken(jwt,
+                authoritiesConverter.toAuthorities(claims.authorityRoles()), claims);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.authservice.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.lang.NonNull;
 import org.springframework.security.core.GrantedAuthority;
@@ -9,8 +11,8 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Convierte los roles del token JWT de Keycloak a las authorities de Spring Security.
@@ -19,53 +21,75 @@ import java.util.stream.Collectors;
  * pero Spring Security espera authorities con el prefijo "ROLE_" para hasRole().
  * 
  * Este converter:
- * 1. Extrae los roles de realm_access.roles (Keycloak)
+ * 1. Extrae los roles de realm_access.roles y resource_access.*.roles (ver KeycloakClaimsExtractor)
  * 2. Los convierte a authorities con el prefijo "ROLE_"
  * 3. Permite que @PreAuthorize("hasRole('ADMIN')") funcione correctamente
+ * 
+ * Los tokens traen 20+ roles y los mismos conjuntos de roles se repiten en cada petición,
+ * por lo que:
+ * - Cada GrantedAuthority se crea una sola vez por nombre de rol (internado)
+ * - La colección inmutable final se memoriza por conjunto de roles en una caché acotada
  */
 public class KeycloakJwtGrantedAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
 
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final KeycloakClaimsExtractor claimsExtractor = new KeycloakClaimsExtractor();
+    private final ConcurrentMap<String, GrantedAuthority> authoritiesByRole = new ConcurrentHashMap<>();
+    private final Cache<List<String>, Collection<GrantedAuthority>> authoritiesByRoles;
+    private final int maximumInternedRoles;
+
+    public KeycloakJwtGrantedAuthoritiesConverter() {
+        this(1000);
+    }
+
+    /**
+     * @param maximumRoleSets Número máximo de conjuntos de roles distintos memorizados
+     */
+    public KeycloakJwtGrantedAuthoritiesConverter(int maximumRoleSets) {
+        this.authoritiesByRoles = Caffeine.newBuilder()
+                .maximumSize(maximumRoleSets)
+                .build();
+        this.maximumInternedRoles = maximumRoleSets;
+    }
+
     @Override
     public Collection<GrantedAuthority> convert(@NonNull Jwt jwt) {
-        List<GrantedAuthority> authorities = new ArrayList<>();
-        
-        // Extraer roles de realm_access (Keycloak)
-        Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
-        if (realmAccess != null) {
-            Object rolesObj = realmAccess.get("roles");
-            if (rolesObj instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<String> roles = (List<String>) rolesObj;
-                authorities.addAll(
-                    roles.stream()
-                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                        .collect(Collectors.toList())
-                );
-            }
+        return toAuthorities(claimsExtractor.extract(jwt).authorityRoles());
+    }
+
+    /**
+     * Devuelve la colección inmutable de authorities para una lista de nombres de rol,
+     * reutilizando la memorizada si ese conjunto de roles ya se vio antes.
+     */
+    public Collection<GrantedAuthority> toAuthorities(List<String> roles) {
+        Collection<GrantedAuthority> cached = authoritiesByRoles.getIfPresent(roles);
+        if (cached != null) {
+            return cached;
         }
         
-        // También extraer roles de resource_access (client roles en Keycloak)
-        Map<String, Object> resourceAccess = jwt.getClaimAsMap("resource_access");
-        if (resourceAccess != null) {
-            resourceAccess.values().forEach(resource -> {
-                if (resource instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> resourceMap = (Map<String, Object>) resource;
-                    Object resourceRoles = resourceMap.get("roles");
-                    if (resourceRoles instanceof List) {
-                        @SuppressWarnings("unchecked")
-                        List<String> roles = (List<String>) resourceRoles;
-                        authorities.addAll(
-                            roles.stream()
-                                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                                .collect(Collectors.toList())
-                        );
-                    }
-                }
-            });
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            authorities.add(authorityFor(role));
         }
-        
-        return authorities;
+        Collection<GrantedAuthority> result = List.copyOf(authorities);
+        authoritiesByRoles.put(List.copyOf(roles), result);
+        return result;
     }
-}
 
+    private GrantedAuthority authorityFor(String role) {
+        GrantedAuthority authority = authoritiesByRole.get(role);
+        if (authority != null) {
+            return authority;
+        }
+        authority = new SimpleGrantedAuthority(ROLE_PREFIX + role);
+        // Tope de seguridad: no internar más roles que el máximo configurado
+        if (authoritiesByRole.size() < maximumInternedRoles) {
+            GrantedAuthority existing = authoritiesByRole.putIfAbsent(role, authority);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return authority;
+    }
+}
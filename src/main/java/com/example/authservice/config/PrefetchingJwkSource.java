@@ -0,0 +1,192 @@
+package com.example.authservice.config;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fuente de claves JWK (JWK Set de Keycloak) con precarga y refresco en segundo plano.
+ *
+ * NimbusJwtDecoder.withJwkSetUri(...) descarga las claves de forma perezosa, por lo que
+ * la primera petición tras cada despliegue (y tras cada rotación de claves) paga la latencia
+ * de la llamada a /protocol/openid-connect/certs.
+ *
+ * Esta fuente:
+ * 1. Descarga las claves al arrancar, antes de que la aplicación pase a ACCEPTING_TRAFFIC
+ *    (si falla, JwksHealthIndicator deja la readiness en OUT_OF_SERVICE hasta que cualquier
+ *    descarga tenga éxito, reintentando cada security.jwt.jwks.retry-interval mientras no haya claves)
+ * 2. Refresca las claves periódicamente en segundo plano (security.jwt.jwks.refresh-interval)
+ * 3. Resuelve las claves por "kid" desde un mapa inmutable publicado de forma atómica (sin locks)
+ * 4. Ante un "kid" desconocido (rotación de claves) vuelve a descargar, como máximo
+ *    una vez por security.jwt.jwks.min-refetch-interval
+ */
+@Slf4j
+public class PrefetchingJwkSource implements JWKSource<SecurityContext>, InitializingBean {
+
+    private final String jwkSetUri;
+    private final RestTemplate restTemplate;
+    private final long minRefetchIntervalMillis;
+    private final Counter refreshFailures;
+
+    private final AtomicLong lastFetchAttempt = new AtomicLong();
+    private volatile KeySnapshot snapshot = KeySnapshot.EMPTY;
+
+    public PrefetchingJwkSource(String jwkSetUri, RestTemplate restTemplate, Duration minRefetchInterval,
+                                MeterRegistry meterRegistry) {
+        this.jwkSetUri = jwkSetUri;
+        this.restTemplate = restTemplate;
+        this.minRefetchIntervalMillis = minRefetchInterval.toMillis();
+        this.refreshFailures = Counter.builder("security.jwks.refresh.failures")
+                .description("Descargas fallidas del JWK Set")
+                .register(meterRegistry);
+        Gauge.builder("security.jwks.refresh.age", this, PrefetchingJwkSource::refreshAgeSeconds)
+                .description("Segundos desde la última descarga exitosa del JWK Set")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("security.jwks.keys", this, source -> source.snapshot.keysById().size())
+                .description("Número de claves JWK cargadas")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Precarga las claves durante el arranque del contexto.
+     * Un fallo no impide arrancar: el refresco programado lo reintentará.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.jwks.refresh-interval:300000}",
+               initialDelayString = "${security.jwt.jwks.refresh-interval:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * Mientras no haya claves (fallo al arrancar), reintenta la descarga con un intervalo
+     * corto en lugar de esperar al siguiente refresco periódico.
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.jwks.retry-interval:5000}",
+               initialDelayString = "${security.jwt.jwks.retry-interval:5000}")
+    public void retryMissingKeys() {
+        if (!hasKeys()) {
+            refresh();
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        String kid = singleKeyId(jwkSelector);
+        if (kid == null) {
+            List<JWK> matches = jwkSelector.select(snapshot.jwkSet());
+            if (matches.isEmpty() && refreshIfAllowed()) {
+                matches = jwkSelector.select(snapshot.jwkSet());
+            }
+            return matches;
+        }
+
+        JWK jwk = snapshot.keysById().get(kid);
+        if (jwk == null && refreshIfAllowed()) {
+            log.info("Clave con kid '{}' desconocida, JWK Set recargado", kid);
+            jwk = snapshot.keysById().get(kid);
+        }
+        if (jwk == null || !jwkSelector.getMatcher().matches(jwk)) {
+            return List.of();
+        }
+        return List.of(jwk);
+    }
+
+    /**
+     * Descarga el JWK Set y publica el nuevo snapshot.
+     *
+     * @return true si la descarga tuvo éxito
+     */
+    public boolean refresh() {
+        lastFetchAttempt.set(System.currentTimeMillis());
+        try {
+            String body = restTemplate.getForObject(jwkSetUri, String.class);
+            if (body == null) {
+                throw new IllegalStateException("Respuesta vacía");
+            }
+            JWKSet jwkSet = JWKSet.parse(body);
+            Map<String, JWK> keysById = new HashMap<>();
+            for (JWK jwk : jwkSet.getKeys()) {
+                if (jwk.getKeyID() != null) {
+                    keysById.put(jwk.getKeyID(), jwk);
+                }
+            }
+            snapshot = new KeySnapshot(jwkSet, Map.copyOf(keysById), System.currentTimeMillis());
+            log.debug("JWK Set cargado desde {} ({} claves)", jwkSetUri, keysById.size());
+            return true;
+        } catch (Exception e) {
+            refreshFailures.increment();
+            log.warn("No se pudo descargar el JWK Set desde {}: {}", jwkSetUri, e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean hasKeys() {
+        return !snapshot.jwkSet().getKeys().isEmpty();
+    }
+
+    public int keyCount() {
+        return snapshot.jwkSet().getKeys().size();
+    }
+
+    public String getJwkSetUri() {
+        return jwkSetUri;
+    }
+
+    /**
+     * Limita las descargas provocadas por kids desconocidos: solo el hilo que gana
+     * el CAS descarga, y como máximo una vez por intervalo mínimo.
+     */
+    private boolean refreshIfAllowed() {
+        long now = System.currentTimeMillis();
+        long last = lastFetchAttempt.get();
+        if (now - last < minRefetchIntervalMillis || !lastFetchAttempt.compareAndSet(last, now)) {
+            return false;
+        }
+        return refresh();
+    }
+
+    private double refreshAgeSeconds() {
+        long fetchedAt = snapshot.fetchedAtMillis();
+        if (fetchedAt == 0) {
+            return Double.NaN;
+        }
+        return (System.currentTimeMillis() - fetchedAt) / 1000.0;
+    }
+
+    private static String singleKeyId(JWKSelector jwkSelector) {
+        Set<String> keyIds = jwkSelector.getMatcher().getKeyIDs();
+        if (keyIds == null || keyIds.size() != 1) {
+            return null;
+        }
+        return keyIds.iterator().next();
+    }
+
+    /**
+     * Estado inmutable de las claves; se reemplaza completo en cada refresco.
+     */
+    private record KeySnapshot(JWKSet jwkSet, Map<String, JWK> keysById, long fetchedAtMillis) {
+        static final KeySnapshot EMPTY = new KeySnapshot(new JWKSet(), Map.of(), 0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.authservice.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtro de rate limiting por principal, registrado después de la autenticación JWT.
+ * 
+ * Una integración que se porta mal no puede saturar /users o /profile para el resto:
+ * al superar su límite recibe 429 con la cabecera Retry-After (en segundos).
+ * Las peticiones anónimas (endpoints públicos) no se limitan aquí.
+ */
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof JwtAuthenticationToken jwtAuthentication) {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            long waitNanos = rateLimiter.tryAcquire(jwtAuthentication, path);
+            if (waitNanos > 0) {
+                reject(request, response, waitNanos);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        // Mismo formato que ErrorResponse de GlobalExceptionHandler
+        response.getWriter().write("{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":429,\"error\":\"Too Many Requests\""
+                + ",\"message\":\"Límite de peticiones excedido, reintenta en " + retryAfterSeconds + " segundos\""
+                + ",\"path\":\"" + request.getRequestURI() + "\"}");
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.authservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuración del rate limiting por principal (security.rate-limit.*).
+ * 
+ * Las reglas se evalúan en orden y gana la primera que coincide con el endpoint
+ * (prefijo de ruta, sin el context-path) y el rol del usuario; si ninguna coincide
+ * se aplica defaultLimit. Cada regla tiene sus propios buckets por principal.
+ */
+@Data
+@ConfigurationProperties(prefix = "security.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Claim del JWT que identifica al principal: "sub" (usuario) o "azp" (cliente).
+     */
+    private String keyClaim = "sub";
+
+    /**
+     * Tiempo sin peticiones tras el cual se descarta el bucket de un principal.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    private Limit defaultLimit = new Limit();
+
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Limit {
+        /** Ráfaga máxima de peticiones */
+        private int capacity = 100;
+        /** Peticiones por segundo sostenidas */
+        private double refillPerSecond = 50;
+    }
+
+    @Data
+    public static class Rule {
+        /** Nombre de la regla (tag "rule" de las métricas) */
+        private String name;
+        /** Prefijo de ruta, ej: /users (opcional) */
+        private String path;
+        /** Rol sin el prefijo ROLE_, ej: ADMIN (opcional) */
+        private String role;
+        private int capacity = 100;
+        private double refillPerSecond = 50;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.authservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter por principal (claim sub o azp del JWT) sin locks.
+ * 
+ * Cada regla tiene su propio ConcurrentHashMap de buckets (segmentado internamente),
+ * y cada bucket es un único AtomicLong actualizado por CAS con el algoritmo GCRA
+ * (equivalente a un token bucket, pero con un solo valor de estado: el instante
+ * teórico de llegada de la siguiente petición). Los buckets inactivos se eliminan
+ * periódicamente.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    private final String keyClaim;
+    private final long idleTimeoutNanos;
+    private final Limit[] limits;
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.keyClaim = properties.getKeyClaim();
+        this.idleTimeoutNanos = properties.getIdleTimeout().toNanos();
+        
+        List<Limit> configured = new ArrayList<>();
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            String name = rule.getName() != null ? rule.getName() : "rule-" + configured.size();
+            configured.add(new Limit(name, rule.getPath(), rule.getRole(),
+                    rule.getCapacity(), rule.getRefillPerSecond(), meterRegistry));
+        }
+        RateLimitProperties.Limit defaultLimit = properties.getDefaultLimit();
+        configured.add(new Limit("default", null, null,
+                defaultLimit.getCapacity(), defaultLimit.getRefillPerSecond(), meterRegistry));
+        this.limits = configured.toArray(Limit[]::new);
+        
+        Gauge.builder("security.rate-limit.buckets", this, RateLimiter::bucketCount)
+                .description("Buckets de rate limiting activos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Consume una petición del bucket del principal para el endpoint.
+     * 
+     * @param path Ruta de la petición sin el context-path
+     * @return 0 si la petición se permite, o los nanosegundos a esperar antes de reintentar
+     */
+    public long tryAcquire(JwtAuthenticationToken authentication, String path) {
+        Object key = authentication.getToken().getClaims().get(keyClaim);
+        if (key == null) {
+            key = authentication.getName();
+        }
+        Limit limit = match(authentication.getAuthorities(), path);
+        return limit.tryAcquire(key.toString(), System.nanoTime());
+    }
+
+    /**
+     * Elimina los buckets sin actividad durante idleTimeout (ya están llenos,
+     * así que descartarlos no cambia el resultado de ninguna petición).
+     */
+    @Scheduled(fixedDelayString = "${security.rate-limit.eviction-interval:60000}")
+    public void evictIdleBuckets() {
+        long threshold = System.nanoTime() - idleTimeoutNanos;
+        int evicted = 0;
+        for (Limit limit : limits) {
+            int before = limit.buckets.size();
+            limit.buckets.values().removeIf(bucket -> bucket.theoreticalArrival.get() < threshold);
+            evicted += before - limit.buckets.size();
+        }
+        if (evicted > 0) {
+            log.debug("{} buckets de rate limiting inactivos eliminados", evicted);
+        }
+    }
+
+    private Limit match(Collection<GrantedAuthority> authorities, String path) {
+        for (Limit limit : limits) {
+            if (limit.matches(authorities, path)) {
+                return limit;
+            }
+        }
+        return limits[limits.length - 1];
+    }
+
+    private double bucketCount() {
+        long count = 0;
+        for (Limit limit : limits) {
+            count += limit.buckets.size();
+        }
+        return count;
+    }
+
+    /**
+     * Regla compilada: criterios de coincidencia, parámetros GCRA, buckets y contadores.
+     */
+    private static final class Limit {
+
+        private final String pathPrefix;
+        private final String authority;
+        /** Intervalo entre peticiones sostenidas (1 / refillPerSecond) */
+        private final long emissionIntervalNanos;
+        /** Adelanto máximo permitido: capacity - 1 intervalos */
+        private final long burstToleranceNanos;
+        private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private final Counter allowed;
+        private final Counter rejected;
+
+        private Limit(String name, String pathPrefix, String role, int capacity, double refillPerSecond,
+                      MeterRegistry meterRegistry) {
+            this.pathPrefix = pathPrefix;
+            this.authority = role != null ? "ROLE_" + role : null;
+            this.emissionIntervalNanos = (long) (1_000_000_000L / refillPerSecond);
+            this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, capacity) - 1);
+            this.allowed = Counter.builder("security.rate-limit.requests")
+                    .description("Peticiones evaluadas por el rate limiter")
+                    .tag("rule", name)
+                    .tag("result", "allowed")
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("security.rate-limit.requests")
+                    .description("Peticiones evaluadas por el rate limiter")
+                    .tag("rule", name)
+                    .tag("result", "rejected")
+                    .register(meterRegistry);
+        }
+
+        private boolean matches(Collection<GrantedAuthority> authorities, String path) {
+            if (pathPrefix != null && !(path.startsWith(pathPrefix)
+                    && (path.length() == pathPrefix.length() || path.charAt(pathPrefix.length()) == '/'))) {
+                return false;
+            }
+            if (authority == null) {
+                return true;
+            }
+            for (GrantedAuthority granted : authorities) {
+                if (authority.equals(granted.getAuthority())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long tryAcquire(String key, long now) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+            }
+            AtomicLong tat = bucket.theoreticalArrival;
+            while (true) {
+                long current = tat.get();
+                long arrival = Math.max(current, now);
+                long wait = arrival - now - burstToleranceNanos;
+                if (wait > 0) {
+                    rejected.increment();
+                    return wait;
+                }
+                if (tat.compareAndSet(current, arrival + emissionIntervalNanos)) {
+                    allowed.increment();
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private final AtomicLong theoreticalArrival;
+
+        private Bucket(long now) {
+            this.theoreticalArrival = new AtomicLong(now);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.authservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Réplicas de lectura (datasource.replicas.enabled=true).
+ *
+ * Sustituye el DataSource de Spring Boot por ReplicaRoutingDataSource con un pool Hikari
+ * para la principal (spring.datasource.*) y otro por réplica, cada uno con sus métricas
+ * hikaricp.* (tag "pool": primary o el nombre de la réplica).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.replicas", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class ReplicaDataSourceConfig {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                             ReplicaDataSourceProperties replicaProperties,
+                                                             Environment environment,
+                                                             MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        binder.bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+        primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        primary.setMetricRegistry(meterRegistry);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (ReplicaDataSourceProperties.Replica target : replicaProperties.getTargets()) {
+            if (target.getName() == null || ReplicaRoutingDataSource.PRIMARY.equals(target.getName())
+                    || replicas.containsKey(target.getName())) {
+                throw new IllegalStateException("Nombre de réplica inválido o repetido: " + target.getName());
+            }
+            HikariDataSource replica = new HikariDataSource();
+            binder.bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+            replica.setPoolName(target.getName());
+            replica.setJdbcUrl(target.getUrl());
+            replica.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            replica.setUsername(target.getUsername() != null
+                    ? target.getUsername() : dataSourceProperties.determineUsername());
+            replica.setPassword(target.getPassword() != null
+                    ? target.getPassword() : dataSourceProperties.determinePassword());
+            if (target.getMaximumPoolSize() != null) {
+                replica.setMaximumPoolSize(target.getMaximumPoolSize());
+            }
+            replica.setConnectionTimeout(replicaProperties.getConnectionTimeout().toMillis());
+            // Una réplica caída no impide arrancar: sus lecturas van a la principal
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.put(target.getName(), replica);
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas, replicaProperties.getLagQuery(),
+                replicaProperties.getMaxLag(), meterRegistry);
+    }
+
+    /**
+     * DataSource de la aplicación (JPA, JdbcTemplate, Flyway): la conexión se pide con la
+     * primera sentencia, cuando ya se sabe si la transacción es de solo lectura.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.authservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Réplicas de lectura de la base de datos (datasource.replicas.*).
+ *
+ * Con enabled=true, las transacciones de solo lectura van a una réplica sana y el resto a
+ * la principal (spring.datasource.*). Ver ReplicaRoutingDataSource.
+ */
+@Data
+@ConfigurationProperties(prefix = "datasource.replicas")
+public class ReplicaDataSourceProperties {
+
+    private boolean enabled = false;
+
+    private List<Replica> targets = new ArrayList<>();
+
+    /**
+     * Consulta que devuelve el retraso de la réplica en segundos. Sin consulta solo se
+     * comprueba que la réplica responde.
+     */
+    private String lagQuery;
+
+    /**
+     * Retraso a partir del cual la réplica deja de recibir lecturas.
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * Espera máxima por una conexión de réplica; pasado este tiempo la lectura va a la principal.
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+
+    @Data
+    public static class Replica {
+        /** Nombre de la réplica (tag "target" de las métricas y nombre del pool) */
+        private String name;
+        private String url;
+        /** Por defecto, los de spring.datasource */
+        private String username;
+        private String password;
+        /** Por defecto, el de spring.datasource.hikari */
+        private Integer maximumPoolSize;
+    }
+}
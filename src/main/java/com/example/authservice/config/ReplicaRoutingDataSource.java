@@ -0,0 +1,237 @@
+package com.example.authservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DataSource que envía las transacciones de solo lectura (@Transactional(readOnly = true))
+ * a las réplicas y todo lo demás a la principal.
+ *
+ * - Las réplicas se reparten en round-robin entre las que están sanas
+ * - checkReplicas() comprueba cada réplica cada datasource.replicas.health-check-interval:
+ *   si no responde o su retraso (lag-query) supera max-lag, deja de recibir lecturas hasta
+ *   que se recupere
+ * - Si no hay réplicas sanas, o la réplica elegida no da una conexión, la lectura va a la principal
+ * - Dentro de onPrimary() todo va a la principal, también las transacciones de solo lectura
+ *
+ * El modo de la transacción solo se conoce cuando ya ha empezado: este DataSource debe usarse
+ * detrás de un LazyConnectionDataSourceProxy, que pide la conexión con la primera sentencia.
+ *
+ * Publica datasource.routing.connections (tags "target" y "type": read o write),
+ * datasource.replicas.healthy y datasource.replicas.lag (tag "target").
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 5;
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Counter primaryWrites;
+    private final Counter primaryReads;
+
+    /**
+     * @param replicas réplicas por nombre
+     * @param lagQuery consulta del retraso en segundos; null para comprobar solo la conexión
+     */
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicas,
+                                    String lagQuery,
+                                    Duration maxLag,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.primaryWrites = connectionCounter(meterRegistry, PRIMARY, "write");
+        this.primaryReads = connectionCounter(meterRegistry, PRIMARY, "read");
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource, connectionCounter(meterRegistry, name, "read"));
+            Gauge.builder("datasource.replicas.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("1 si la réplica recibe lecturas")
+                    .tag("target", name)
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replicas.lag", replica, r -> r.lagSeconds)
+                    .description("Retraso de la réplica en la última comprobación")
+                    .tag("target", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            this.replicas.add(replica);
+        });
+    }
+
+    /**
+     * Ejecuta la tarea con todas sus conexiones en la principal, aunque sus transacciones sean
+     * de solo lectura.
+     *
+     * Para lecturas masivas de larga duración (cursores de reconciliación y exportación): en una
+     * réplica verían datos con retraso y PostgreSQL puede cancelarlas por conflicto con la
+     * recuperación. Sin réplicas configuradas no tiene efecto.
+     */
+    public static void onPrimary(Runnable task) {
+        onPrimary(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Como onPrimary(Runnable), devolviendo el resultado de la tarea.
+     */
+    public static <T> T onPrimary(Supplier<T> task) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            }
+        }
+    }
+
+    /**
+     * @return true si el hilo actual está dentro de onPrimary()
+     */
+    public static boolean isPrimaryForced() {
+        return FORCE_PRIMARY.get() != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryWrites.increment();
+            return primary.getConnection();
+        }
+        if (isPrimaryForced()) {
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+        Replica replica = selectReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.connections.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Las credenciales son las de cada pool");
+    }
+
+    /**
+     * Comprueba la conexión y el retraso de cada réplica. Cada comprobación espera como mucho
+     * connection-timeout por la conexión y HEALTH_CHECK_TIMEOUT_SECONDS por la consulta, para
+     * no retener el hilo del scheduler con una réplica colgada.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.health-check-interval:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                double lagSeconds = 0;
+                if (lagQuery != null) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+                        try (ResultSet rs = statement.executeQuery(lagQuery)) {
+                            lagSeconds = rs.next() ? rs.getDouble(1) : 0;
+                        }
+                    }
+                } else if (!connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS)) {
+                    throw new SQLException("Conexión no válida");
+                }
+                replica.lagSeconds = lagSeconds;
+                boolean healthy = lagSeconds * 1000 <= maxLag.toMillis();
+                if (healthy != replica.healthy) {
+                    log.warn("Réplica '{}' {} (retraso {} s)", replica.name,
+                            healthy ? "vuelve a recibir lecturas" : "retrasada, las lecturas van a la principal",
+                            lagSeconds);
+                }
+                replica.healthy = healthy;
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Replica selectReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static Counter connectionCounter(MeterRegistry meterRegistry, String target, String type) {
+        return Counter.builder("datasource.routing.connections")
+                .description("Conexiones obtenidas por destino (las lecturas sin réplica sana van a la principal)")
+                .tags("target", target, "type", type)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final Counter connections;
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource, Counter connections) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.connections = connections;
+        }
+
+        private void markDown(SQLException e) {
+            if (healthy) {
+                log.warn("Réplica '{}' no disponible, las lecturas van a la principal: {}", name, e.getMessage());
+            }
+            healthy = false;
+        }
+    }
+}
@@ -1,22 +1,151 @@
 package com.example.authservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Configuración de RestTemplate para comunicarse con Keycloak.
+ *
+ * Usa un pool de conexiones keep-alive de Apache HttpClient 5 en lugar de
+ * HttpURLConnection, para no pagar el handshake TCP/TLS en cada llamada a la Admin API:
+ * - Tamaño del pool total y por ruta (host) configurable
+ * - Conexiones inactivas o caducadas cerradas en segundo plano
+ * - Métricas del pool (httpcomponents.httpclient.pool.*) y del tiempo de espera
+ *   por una conexión (http.client.pool.lease)
+ *
+ * Se construye con RestTemplateBuilder para que Spring Boot registre
+ * http.client.requests con el tag "uri" igual a la plantilla (ej: /admin/realms/{realm}/users/{id}).
+ * Las rutas relativas se resuelven contra keycloak.url.
+ *
+ * Con keycloak.http.http2=true se usa java.net.http.HttpClient (HTTP/2 con
+ * multiplexación, pool propio sin métricas de pool).
  */
 @Configuration
 public class RestTemplateConfig {
 
+    private static final String POOL_NAME = "keycloak";
+
+    @Value("${keycloak.url:http://localhost:8080}")
+    private String keycloakUrl;
+
+    @Value("${keycloak.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${keycloak.http.read-timeout:10s}")
+    private Duration readTimeout;
+
+    @Value("${keycloak.http.http2:false}")
+    private boolean http2;
+
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000); // 5 segundos
-        factory.setReadTimeout(10000);   // 10 segundos
-        return new RestTemplate(factory);
+    public RestTemplate restTemplate(RestTemplateBuilder builder, ClientHttpRequestFactory keycloakRequestFactory) {
+        return builder
+                .rootUri(keycloakUrl)
+                .requestFactory(() -> keycloakRequestFactory)
+                .build();
     }
-}
 
+    /**
+     * Declarado como bean para que Spring cierre el cliente HTTP (y su hilo de desalojo) al parar.
+     */
+    @Bean
+    public ClientHttpRequestFactory keycloakRequestFactory(
+            PoolingHttpClientConnectionManager connectionManager,
+            @Value("${keycloak.http.idle-eviction:30s}") Duration idleEviction,
+            @Value("${keycloak.http.connection-request-timeout:5s}") Duration connectionRequestTimeout) {
+        if (http2) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(connectTimeout)
+                    .build();
+            JdkClientHttpRequestFactory jdkFactory = new JdkClientHttpRequestFactory(httpClient);
+            jdkFactory.setReadTimeout(readTimeout);
+            return jdkFactory;
+        }
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .evictExpiredConnections()
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * Pool de conexiones; el tiempo que cada petición espera por una conexión libre
+     * se registra en http.client.pool.lease (si crece, el pool se queda corto).
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager keycloakConnectionManager(
+            MeterRegistry meterRegistry,
+            @Value("${keycloak.http.max-connections:50}") int maxConnections,
+            @Value("${keycloak.http.max-connections-per-route:20}") int maxConnectionsPerRoute,
+            @Value("${keycloak.http.connection-ttl:5m}") Duration connectionTtl) {
+        Timer leaseTimer = Timer.builder("http.client.pool.lease")
+                .description("Tiempo de espera por una conexión del pool HTTP")
+                .tag("pool", POOL_NAME)
+                .register(meterRegistry);
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager() {
+            @Override
+            public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+                LeaseRequest leaseRequest = super.lease(id, route, requestTimeout, state);
+                long start = System.nanoTime();
+                return new LeaseRequest() {
+                    @Override
+                    public ConnectionEndpoint get(Timeout timeout)
+                            throws InterruptedException, ExecutionException, TimeoutException {
+                        try {
+                            return leaseRequest.get(timeout);
+                        } finally {
+                            leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    }
+
+                    @Override
+                    public boolean cancel() {
+                        return leaseRequest.cancel();
+                    }
+                };
+            }
+        };
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setTimeToLive(TimeValue.of(connectionTtl))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+        return connectionManager;
+    }
+}
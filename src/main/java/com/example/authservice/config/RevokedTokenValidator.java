@@ -0,0 +1,32 @@
+package com.example.authservice.config;
+
+import com.example.authservice.service.TokenRevocationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Validador que rechaza tokens revocados (por jti o por subject).
+ * 
+ * Se añade a los validadores del JwtDecoder y también se aplica a los tokens
+ * servidos desde la caché de CachingJwtDecoder.
+ */
+@RequiredArgsConstructor
+public class RevokedTokenValidator implements OAuth2TokenValidator<Jwt> {
+
+    private static final OAuth2Error REVOKED = new OAuth2Error(
+            OAuth2ErrorCodes.INVALID_TOKEN, "The token has been revoked", null);
+
+    private final TokenRevocationService tokenRevocationService;
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        if (tokenRevocationService.isRevoked(jwt)) {
+            return OAuth2TokenValidatorResult.failure(REVOKED);
+        }
+        return OAuth2TokenValidatorResult.success();
+    }
+}
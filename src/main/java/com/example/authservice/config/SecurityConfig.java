@@ -1,17 +1,21 @@
 package com.example.authservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -24,18 +28,39 @@ import java.util.List;
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfig {
 
+    @Value("${security.jwt.prevalidation.enabled:true}")
+    private boolean preValidationEnabled;
+
+    @Value("${security.jwt.prevalidation.allowed-algorithms:RS256}")
+    private List<String> preValidationAllowedAlgorithms;
+
+    @Value("${security.jwt.prevalidation.clock-skew:60s}")
+    private Duration preValidationClockSkew;
+
+    @Value("${security.jwt.prevalidation.max-token-length:16384}")
+    private int preValidationMaxTokenLength;
+
     /**
      * Configura el filtro de seguridad para OAuth 2.0 Resource Server.
      * 
      * - Desactiva la autenticación basada en sesión (stateless)
      * - Configura OAuth2 Resource Server con JWT
+     * - Rechaza tokens expirados o malformados antes de verificar la firma (JwtPreValidationFilter)
+     * - Limita las peticiones por principal una vez autenticado (RateLimitFilter)
      * - Permite acceso público a endpoints de documentación y health checks
      * - Requiere autenticación para todos los demás endpoints
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            KeycloakClaimsExtractor keycloakClaimsExtractor,
+            KeycloakJwtGrantedAuthoritiesConverter keycloakJwtGrantedAuthoritiesConverter,
+            RateLimitProperties rateLimitProperties,
+            RateLimiter rateLimiter,
+            MeterRegistry meterRegistry) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
@@ -56,19 +81,40 @@ public class SecurityConfig {
             )
             .oauth2ResourceServer(oauth2 -> oauth2
                 .jwt(jwt -> {
-                    // Configurar el converter para mapear roles de Keycloak a authorities de Spring Security
-                    JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-                    jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new KeycloakJwtGrantedAuthoritiesConverter());
-                    jwt.jwtAuthenticationConverter(jwtAuthenticationConverter);
+                    // Configurar el converter para mapear roles de Keycloak a authorities de Spring Security.
+                    // Los claims se parsean una sola vez y viajan en KeycloakAuthenticationToken.
+                    jwt.jwtAuthenticationConverter(new KeycloakJwtAuthenticationConverter(
+                            keycloakClaimsExtractor, keycloakJwtGrantedAuthoritiesConverter));
                 })
             )
             .headers(headers -> headers
                 .frameOptions(frameOptions -> frameOptions.disable())
             );
 
+        // No se declara como @Bean: Spring Boot lo registraría también como filtro de servlet
+        if (preValidationEnabled) {
+            http.addFilterBefore(
+                new JwtPreValidationFilter(preValidationAllowedAlgorithms, preValidationClockSkew,
+                        preValidationMaxTokenLength, meterRegistry),
+                BearerTokenAuthenticationFilter.class);
+        }
+        if (rateLimitProperties.isEnabled()) {
+            http.addFilterAfter(new RateLimitFilter(rateLimiter), BearerTokenAuthenticationFilter.class);
+        }
+
         return http.build();
     }
 
+    /**
+     * Converter de roles de Keycloak a authorities, compartido entre peticiones
+     * para reutilizar las authorities ya creadas (ver KeycloakJwtGrantedAuthoritiesConverter).
+     */
+    @Bean
+    public KeycloakJwtGrantedAuthoritiesConverter keycloakJwtGrantedAuthoritiesConverter(
+            @Value("${security.jwt.authorities.cache-size:1000}") int cacheSize) {
+        return new KeycloakJwtGrantedAuthoritiesConverter(cacheSize);
+    }
+
     /**
      * Configuración CORS para permitir requests desde el frontend.
      * En producción, configurar los orígenes permitidos apropiadamente.
@@ -1,8 +1,10 @@
 package com.example.authservice.controller;
 
+import com.example.authservice.config.KeycloakAuthenticationToken;
 import com.example.authservice.dto.ProfileDTO;
 import com.example.authservice.service.ProfileService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,8 +13,6 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,7 +21,8 @@ import org.springframework.web.bind.annotation.RestController;
  * Controlador REST para la gestión del perfil del usuario autenticado.
  * 
  * Este controlador extrae información del token JWT para mostrar
- * el perfil del usuario que está haciendo la petición.
+ * el perfil del usuario que está haciendo la petición. Recibe directamente
+ * KeycloakAuthenticationToken, cuyos claims ya se parsearon al autenticar.
  */
 @RestController
 @RequestMapping("/profile")
@@ -58,8 +59,8 @@ public class ProfileController {
     })
     @GetMapping
     public ResponseEntity<ProfileDTO> getProfile(
-            @AuthenticationPrincipal Jwt jwt) {
-        ProfileDTO profile = profileService.getProfileFromJwt(jwt);
+            @Parameter(hidden = true) KeycloakAuthenticationToken authentication) {
+        ProfileDTO profile = profileService.getProfile(authentication);
         return ResponseEntity.ok(profile);
     }
 
@@ -82,8 +83,8 @@ public class ProfileController {
     })
     @GetMapping("/token-info")
     public ResponseEntity<ProfileDTO> getTokenInfo(
-            @AuthenticationPrincipal Jwt jwt) {
-        ProfileDTO tokenInfo = profileService.getTokenInfo(jwt);
+            @Parameter(hidden = true) KeycloakAuthenticationToken authentication) {
+        ProfileDTO tokenInfo = profileService.getTokenInfo(authentication);
         return ResponseEntity.ok(tokenInfo);
     }
 }
@@ -0,0 +1,142 @@
+package com.example.authservice.controller;
+
+import com.example.authservice.dto.TokenRevocationRequestDTO;
+import com.example.authservice.dto.TokenValidationRequestDTO;
+import com.example.authservice.dto.TokenValidationResultDTO;
+import com.example.authservice.service.TokenRevocationService;
+import com.example.authservice.service.TokenValidationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Controlador REST para validar tokens emitidos por el Authorization Server.
+ * 
+ * Pensado para gateways: una sola llamada valida cientos de tokens
+ * en lugar de una llamada HTTP por token (ver TOKEN_VALIDATION.md).
+ */
+@RestController
+@RequestMapping("/tokens")
+@RequiredArgsConstructor
+@Tag(name = "Tokens", description = "API para validación de tokens JWT")
+@SecurityRequirement(name = "bearerAuth")
+public class TokenController {
+
+    private final TokenValidationService tokenValidationService;
+    private final TokenRevocationService tokenRevocationService;
+    private final ObjectMapper objectMapper;
+
+    @Operation(
+        summary = "Validar tokens en lote",
+        description = """
+            Valida en paralelo un lote de tokens JWT con el mismo decoder que usa el servicio
+            (firma, issuer y expiración). Retorna, por token, si es válido, su subject,
+            expiración y roles. Requiere rol ADMIN o TOKEN_VALIDATOR.
+            
+            Con `Accept: application/x-ndjson` los resultados se envían en streaming,
+            una línea JSON por token en cuanto se valida (el campo `index` indica su posición).
+            """
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Lote validado",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = TokenValidationResultDTO.class)))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Lote vacío o mayor que el máximo permitido"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para validar tokens"
+        )
+    })
+    @PostMapping(value = "/validate", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'TOKEN_VALIDATOR')")
+    public ResponseEntity<List<TokenValidationResultDTO>> validateTokens(
+            @Valid @RequestBody TokenValidationRequestDTO request) {
+        List<TokenValidationResultDTO> results = tokenValidationService.validate(request.getTokens());
+        return ResponseEntity.ok(results);
+    }
+
+    @Operation(hidden = true)
+    @PostMapping(value = "/validate", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'TOKEN_VALIDATOR')")
+    public ResponseEntity<StreamingResponseBody> validateTokensStream(
+            @Valid @RequestBody TokenValidationRequestDTO request) {
+        // Validar el tamaño antes de empezar a responder, para poder devolver un 400
+        tokenValidationService.requireValidBatchSize(request.getTokens());
+        
+        StreamingResponseBody body = outputStream ->
+            tokenValidationService.validate(request.getTokens(), result -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(result));
+                    outputStream.write('\n');
+                    outputStream.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @Operation(
+        summary = "Revocar tokens",
+        description = """
+            Revoca un token concreto (jti) o todos los tokens emitidos hasta ahora
+            para un usuario (subject), antes de su expiración. Requiere rol ADMIN.
+            """
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "204",
+            description = "Revocación registrada"
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Debe indicarse jti o subject"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para revocar tokens"
+        )
+    })
+    @PostMapping("/revoke")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> revokeTokens(
+            @Valid @RequestBody TokenRevocationRequestDTO request) {
+        if (request.getJti() != null && !request.getJti().isBlank()) {
+            Instant expiresAt = request.getExpirationTime() != null
+                    ? Instant.ofEpochSecond(request.getExpirationTime()) : null;
+            tokenRevocationService.revokeToken(request.getJti(), expiresAt);
+        }
+        if (request.getSubject() != null && !request.getSubject().isBlank()) {
+            tokenRevocationService.revokeSubject(request.getSubject());
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,8 +1,19 @@
 package com.example.authservice.controller;
 
+import com.example.authservice.dto.BulkUserUpdateDTO;
+import com.example.authservice.dto.BulkUserUpdateResultDTO;
+import com.example.authservice.dto.ReconciliationReportDTO;
 import com.example.authservice.dto.UserCreateResponseDTO;
 import com.example.authservice.dto.UserDTO;
+import com.example.authservice.dto.UserImportResultDTO;
+import com.example.authservice.dto.UserPageDTO;
+import com.example.authservice.service.KeycloakReconciliationService;
+import com.example.authservice.service.UserBulkUpdateService;
+import com.example.authservice.service.UserExportService;
+import com.example.authservice.service.UserImportService;
+import com.example.authservice.service.UserSearchService;
 import com.example.authservice.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,13 +22,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -33,16 +51,28 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final UserExportService userExportService;
+    private final UserBulkUpdateService userBulkUpdateService;
+    private final UserSearchService userSearchService;
+    private final KeycloakReconciliationService reconciliationService;
+    private final ObjectMapper objectMapper;
 
     @Operation(
-        summary = "Obtener todos los usuarios",
-        description = "Retorna una lista de todos los usuarios. Requiere rol ADMIN."
+        summary = "Listar usuarios",
+        description = "Retorna una página de usuarios ordenados por ID. Para la página siguiente, " +
+                "repetir la petición con cursor igual al campo next de la respuesta (null en la última). " +
+                "Requiere rol ADMIN."
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200",
-            description = "Lista de usuarios obtenida exitosamente",
-            content = @Content(schema = @Schema(implementation = UserDTO.class))
+            description = "Página de usuarios obtenida exitosamente",
+            content = @Content(schema = @Schema(implementation = UserPageDTO.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Cursor inválido"
         ),
         @ApiResponse(
             responseCode = "403",
@@ -55,9 +85,45 @@ public class UserController {
     })
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        List<UserDTO> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<UserPageDTO> getUsers(
+            @Parameter(description = "Cursor de la página siguiente (campo next de la respuesta anterior)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Usuarios por página (por defecto 50, máximo 500)")
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(userService.getUsers(cursor, size));
+    }
+
+    @Operation(
+        summary = "Buscar usuarios",
+        description = "Busca usuarios por username, email o nombre completo, sin distinguir mayúsculas. " +
+                "Primero el username exacto y las coincidencias por prefijo (username, email, nombre), " +
+                "después las que contienen el texto. Con prefix=true (o menos de 3 caracteres) solo " +
+                "por prefijo, pensado para autocompletado. Requiere rol ADMIN."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Usuarios encontrados, por relevancia"
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Falta el parámetro q o es demasiado largo"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para buscar usuarios"
+        )
+    })
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<UserDTO>> searchUsers(
+            @Parameter(description = "Texto a buscar", required = true)
+            @RequestParam String q,
+            @Parameter(description = "Máximo de resultados (por defecto 20, máximo 100)")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "true para buscar solo por prefijo")
+            @RequestParam(defaultValue = "false") boolean prefix) {
+        return ResponseEntity.ok(userSearchService.search(q, limit, prefix));
     }
 
     @Operation(
@@ -115,6 +181,131 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @Operation(
+        summary = "Importar usuarios en lote",
+        description = """
+            Importa usuarios desde un fichero NDJSON (un UserDTO por línea, `Content-Type: application/x-ndjson`)
+            o CSV con cabecera `username,email,fullName,active` (`Content-Type: text/csv`). Requiere rol ADMIN.
+            
+            El fichero se procesa en streaming por bloques: cada fila se valida como en POST /users,
+            se insertan en BD por lotes y se crean en Keycloak con la Partial Import API.
+            La respuesta es NDJSON con una línea por fila (estado, ID y password temporal).
+            """
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Resultados por fila, en streaming",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                schema = @Schema(implementation = UserImportResultDTO.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Cabecera CSV inválida"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para importar usuarios"
+        )
+    })
+    @PostMapping(
+        value = "/import",
+        consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"},
+        produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> importUsers(HttpServletRequest request) throws IOException {
+        UserImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(
+                MediaType.parseMediaType(request.getContentType()))
+                ? UserImportService.Format.NDJSON : UserImportService.Format.CSV;
+        UserImportService.UserImport userImport = userImportService.open(request.getInputStream(), format);
+        
+        StreamingResponseBody body = outputStream -> {
+            userImport.run(result -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(result));
+                    outputStream.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @Operation(
+        summary = "Exportar todos los usuarios",
+        description = """
+            Exporta la tabla de usuarios completa, en orden de ID, como NDJSON (format=ndjson, por defecto)
+            o CSV con cabecera (format=csv) con las columnas que acepta POST /users/import. Requiere rol ADMIN.
+            
+            Las filas se leen con un cursor y se escriben en streaming: la memoria usada
+            no depende del tamaño de la tabla.
+            """
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Usuarios, en streaming",
+            content = {
+                @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE),
+                @Content(mediaType = "text/csv")
+            }
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para exportar usuarios"
+        )
+    })
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        UserExportService.Format exportFormat = "csv".equalsIgnoreCase(format)
+                ? UserExportService.Format.CSV : UserExportService.Format.NDJSON;
+        StreamingResponseBody body = outputStream -> userExportService.export(outputStream, exportFormat);
+        return ResponseEntity.ok()
+                .contentType(exportFormat == UserExportService.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users."
+                        + (exportFormat == UserExportService.Format.CSV ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
+    @Operation(
+        summary = "Reconciliar usuarios con Keycloak",
+        description = "Alinea la tabla de usuarios con Keycloak (fuente de verdad): crea los usuarios que solo " +
+                "existen en Keycloak, actualiza email, nombre y estado, y elimina los que ya no existen en Keycloak. " +
+                "Con dryRun=true (por defecto) solo calcula los cambios. Requiere rol ADMIN."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Reconciliación terminada",
+            content = @Content(schema = @Schema(implementation = ReconciliationReportDTO.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Ya hay una reconciliación en curso o Keycloak no respondió"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para reconciliar usuarios"
+        )
+    })
+    @PostMapping("/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationReportDTO> reconcileUsers(
+            @Parameter(description = "true para calcular los cambios sin aplicarlos")
+            @RequestParam(defaultValue = "true") boolean dryRun) {
+        return ResponseEntity.ok(reconciliationService.reconcile(dryRun));
+    }
+
     @Operation(
         summary = "Actualizar un usuario",
         description = "Actualiza la información de un usuario existente."
@@ -143,6 +334,38 @@ public class UserController {
         return ResponseEntity.ok(updatedUser);
     }
 
+    @Operation(
+        summary = "Actualizar usuarios en lote",
+        description = """
+            Aplica en una sola transacción la activación/desactivación de muchos usuarios (ids + active)
+            y/o cambios individuales de email, nombre y estado (users). Requiere rol ADMIN.
+            
+            Las activaciones se aplican con una sentencia por bloque de IDs y los cambios por usuario
+            en batches JDBC. Los IDs inexistentes se cuentan en notFound.
+            """
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Usuarios actualizados",
+            content = @Content(schema = @Schema(implementation = BulkUserUpdateResultDTO.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Petición vacía, demasiado grande, datos inválidos o email ya en uso"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "No tienes permisos para actualizar usuarios en lote"
+        )
+    })
+    @PatchMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkUserUpdateResultDTO> bulkUpdateUsers(
+            @Valid @RequestBody BulkUserUpdateDTO request) {
+        return ResponseEntity.ok(userBulkUpdateService.update(request));
+    }
+
     @Operation(
         summary = "Eliminar un usuario",
         description = "Elimina un usuario del sistema. Requiere rol ADMIN."
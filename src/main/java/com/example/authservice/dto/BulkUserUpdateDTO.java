@@ -0,0 +1,35 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Petición de actualización masiva de usuarios (PATCH /users/bulk).
+ *
+ * Admite dos formas, combinables en la misma petición:
+ * - ids + active: activa o desactiva todos esos usuarios
+ * - users: cambios individuales por usuario
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Actualización masiva: activación/desactivación por IDs y/o cambios por usuario")
+public class BulkUserUpdateDTO {
+
+    @Schema(description = "IDs de los usuarios a activar o desactivar (requiere active)", example = "[1, 2, 3]")
+    private List<Long> ids;
+
+    @Schema(description = "Estado a aplicar a todos los usuarios de ids", example = "false")
+    private Boolean active;
+
+    @Valid
+    @Schema(description = "Cambios individuales por usuario")
+    private List<UserPatchDTO> users;
+}
@@ -0,0 +1,27 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con el resultado de una actualización masiva de usuarios.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resultado de la actualización masiva")
+public class BulkUserUpdateResultDTO {
+
+    @Schema(description = "Actualizaciones pedidas (ids más users)", example = "5000")
+    private long requested;
+
+    @Schema(description = "Filas actualizadas", example = "4998")
+    private long updated;
+
+    @Schema(description = "Actualizaciones sin usuario con ese ID", example = "2")
+    private long notFound;
+}
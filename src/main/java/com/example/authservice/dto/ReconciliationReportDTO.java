@@ -0,0 +1,50 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO con el resultado de una reconciliación entre Keycloak y la tabla users.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resultado de la reconciliación con Keycloak")
+public class ReconciliationReportDTO {
+
+    @Schema(description = "true si solo se calcularon los cambios, sin aplicarlos", example = "true")
+    private boolean dryRun;
+
+    @Schema(description = "Inicio de la reconciliación")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "Duración en milisegundos", example = "84000")
+    private long durationMillis;
+
+    @Schema(description = "Usuarios leídos de Keycloak", example = "1000000")
+    private long keycloakUsers;
+
+    @Schema(description = "Usuarios leídos de la base de datos local", example = "999850")
+    private long localUsers;
+
+    @Schema(description = "Usuarios de Keycloak que faltaban en local y se crearon", example = "150")
+    private long created;
+
+    @Schema(description = "Usuarios locales actualizados con los datos de Keycloak", example = "12")
+    private long updated;
+
+    @Schema(description = "Usuarios locales eliminados por no existir ya en Keycloak", example = "3")
+    private long deleted;
+
+    @Schema(description = "Diferencias que no se corrigieron (sin email, duplicados, alta pendiente...)", example = "1")
+    private long skipped;
+
+    @Schema(description = "Cambios que fallaron al aplicarse", example = "0")
+    private long errors;
+}
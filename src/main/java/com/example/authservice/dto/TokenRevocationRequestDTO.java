@@ -0,0 +1,36 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.AssertTrue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para revocar un token (por jti) o todos los tokens de un usuario (por subject).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Revocación de tokens por jti o por subject")
+public class TokenRevocationRequestDTO {
+
+    @Schema(description = "ID del token (claim jti)", example = "b6f3c2e1-7a0d-4c1e-9f2a-3d5e8c7b9a10")
+    private String jti;
+
+    @Schema(description = "Fecha de expiración del token revocado (timestamp); si falta se usa la vida máxima configurada",
+            example = "1704067200")
+    private Long expirationTime;
+
+    @Schema(description = "Subject (ID del usuario); revoca todos sus tokens emitidos hasta ahora",
+            example = "123e4567-e89b-12d3-a456-426614174000")
+    private String subject;
+
+    @AssertTrue(message = "Debe indicarse jti o subject")
+    @Schema(hidden = true)
+    public boolean isTargetPresent() {
+        return (jti != null && !jti.isBlank()) || (subject != null && !subject.isBlank());
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para la validación de tokens en lote.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Lote de tokens JWT a validar")
+public class TokenValidationRequestDTO {
+
+    @NotEmpty(message = "Debe enviarse al menos un token")
+    @Schema(description = "Tokens JWT (sin el prefijo 'Bearer ')", required = true)
+    private List<String> tokens;
+}
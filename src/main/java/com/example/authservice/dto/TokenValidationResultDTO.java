@@ -0,0 +1,40 @@
+package com.example.authservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO con el resultado de validar un token del lote.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Resultado de la validación de un token")
+public class TokenValidationResultDTO {
+
+    @Schema(description = "Posición del token en el lote recibido", example = "0")
+    private int index;
+
+    @Schema(description = "Indica si el token es válido", example = "true")
+    private boolean valid;
+
+    @Schema(description = "Subject (ID del usuario en el Authorization Server)", example = "123e4567-e89b-12d3-a456-426614174000")
+    private String subject;
+
+    @Schema(description = "Fecha de expiración del token (timestamp)", example = "1704067200")
+    private Long expirationTime;
+
+    @Schema(description = "Roles del usuario", example = "[\"USER\", \"ADMIN\"]")
+    private List<String> roles;
+
+    @Schema(description = "Motivo por el que el token no es válido", example = "Jwt expired at 2024-01-01T00:00:00Z")
+    private String error;
+}
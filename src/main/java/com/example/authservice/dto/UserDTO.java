@@ -1,5 +1,6 @@
 package com.example.authservice.dto;
 
+import com.example.authservice.entity.ProvisioningStatus;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -41,4 +42,8 @@ public class UserDTO {
 
     @Schema(description = "Indica si el usuario está activo", example = "true")
     private Boolean active;
+
+    @Schema(description = "Estado del alta en Keycloak (se completa en segundo plano)",
+            example = "COMPLETED", accessMode = Schema.AccessMode.READ_ONLY)
+    private ProvisioningStatus provisioningStatus;
 }
@@ -0,0 +1,58 @@
+package com.example.authservice.dto;
+
+import com.example.authservice.entity.ProvisioningStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con el resultado de importar una fila (POST /users/import).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Resultado de la importación de un usuario")
+public class UserImportResultDTO {
+
+    public enum Status {
+        /** Usuario creado */
+        CREATED,
+        /**
+         * Usuario creado en la base de datos; ya existía en Keycloak, donde conserva su password
+         * (no se genera password temporal)
+         */
+        LINKED,
+        /** La fila no cumple las validaciones de UserDTO o no se pudo leer */
+        INVALID,
+        /** El username o el email ya existen (en la base de datos o antes en el mismo fichero) */
+        DUPLICATE,
+        /** Error inesperado al guardar la fila */
+        ERROR
+    }
+
+    @Schema(description = "Línea del fichero (empezando en 1)", example = "2")
+    private long line;
+
+    @Schema(description = "Nombre de usuario", example = "johndoe")
+    private String username;
+
+    @Schema(description = "Resultado de la fila", example = "CREATED")
+    private Status status;
+
+    @Schema(description = "ID del usuario creado", example = "1")
+    private Long id;
+
+    @Schema(description = "Password temporal generado (debe cambiarse en el primer login)", example = "TempPass123!@#")
+    private String temporaryPassword;
+
+    @Schema(description = "Estado del alta en Keycloak", example = "COMPLETED")
+    private ProvisioningStatus provisioningStatus;
+
+    @Schema(description = "Motivo por el que la fila no se importó", example = "email: El email debe tener un formato válido")
+    private String error;
+}
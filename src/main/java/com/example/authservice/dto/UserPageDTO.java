@@ -0,0 +1,27 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO con una página del listado de usuarios (paginación por cursor).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Página de usuarios ordenada por ID")
+public class UserPageDTO {
+
+    @Schema(description = "Usuarios de la página")
+    private List<UserDTO> users;
+
+    @Schema(description = "Cursor opaco de la página siguiente (parámetro cursor); null si es la última",
+            example = "MTAw")
+    private String next;
+}
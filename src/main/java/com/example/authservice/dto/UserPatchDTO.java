@@ -0,0 +1,36 @@
+package com.example.authservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cambios parciales sobre un usuario (PATCH /users/bulk): los campos null no se modifican.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Cambios sobre un usuario; los campos omitidos no se modifican")
+public class UserPatchDTO {
+
+    @NotNull(message = "El ID del usuario es obligatorio")
+    @Schema(description = "ID del usuario", example = "1", required = true)
+    private Long id;
+
+    @Email(message = "El email debe tener un formato válido")
+    @Schema(description = "Nuevo email", example = "john.doe@example.com")
+    private String email;
+
+    @Size(max = 100, message = "El nombre completo no puede exceder 100 caracteres")
+    @Schema(description = "Nuevo nombre completo", example = "John Doe")
+    private String fullName;
+
+    @Schema(description = "Nuevo estado", example = "false")
+    private Boolean active;
+}
@@ -0,0 +1,90 @@
+package com.example.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA que representa una operación pendiente contra Keycloak (transactional outbox).
+ * 
+ * Se inserta en la misma transacción que el cambio en la tabla users, de modo que
+ * la operación en Keycloak se ejecuta si y solo si el cambio local se confirmó.
+ * KeycloakProvisioningWorker la procesa en segundo plano con reintentos.
+ */
+@Entity
+@Table(name = "provisioning_outbox")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProvisioningOutboxEntry {
+
+    public enum Operation {
+        CREATE_USER,
+        DELETE_USER
+    }
+
+    public enum Status {
+        PENDING,
+        PROCESSING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Operation operation;
+
+    /**
+     * ID del usuario en la tabla users (sin FK: la fila puede haberse eliminado).
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 50)
+    private String username;
+
+    /**
+     * Datos de la operación en JSON. Incluye el password temporal en las altas,
+     * por eso se borra al terminar (con éxito o no).
+     */
+    @Column(length = 4000)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    /**
+     * Próximo intento (backoff), o fin del plazo de una entrada en PROCESSING.
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
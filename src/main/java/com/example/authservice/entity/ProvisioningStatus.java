@@ -0,0 +1,14 @@
+package com.example.authservice.entity;
+
+/**
+ * Estado del alta de un usuario en Keycloak (la realiza KeycloakProvisioningWorker
+ * en segundo plano a partir de la tabla provisioning_outbox).
+ */
+public enum ProvisioningStatus {
+    /** Pendiente de crear en Keycloak (o reintentando) */
+    PENDING,
+    /** Usuario creado en Keycloak */
+    COMPLETED,
+    /** Se agotaron los reintentos; ver last_error en provisioning_outbox */
+    FAILED
+}
@@ -0,0 +1,53 @@
+package com.example.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA que representa una revocación de tokens.
+ * 
+ * Una fila revoca un token concreto (jti) o todos los tokens de un subject
+ * emitidos hasta el momento de la revocación. Las réplicas leen esta tabla
+ * de forma incremental (por id) para mantener su lista en memoria sincronizada.
+ */
+@Entity
+@Table(name = "revoked_tokens")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 255)
+    private String jti;
+
+    @Column(length = 255)
+    private String subject;
+
+    /**
+     * Momento (epoch en segundos) a partir del cual la revocación deja de ser necesaria
+     * porque los tokens afectados ya expiraron.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private Long expiresAt;
+
+    /**
+     * Momento (epoch en segundos) de la revocación. Para revocaciones por subject,
+     * se revocan los tokens emitidos (iat) hasta este instante.
+     */
+    @Column(name = "revoked_at", nullable = false)
+    private Long revokedAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
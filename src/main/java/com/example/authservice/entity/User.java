@@ -12,21 +12,48 @@ import java.time.LocalDateTime;
  * Entidad JPA que representa un usuario en la base de datos.
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email")
+}, indexes = {
+        // Solo para ddl-auto (H2): en PostgreSQL la búsqueda usa los índices de expresiones de V6
+        @Index(name = "idx_users_full_name", columnList = "full_name")
+})
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
 
+    /**
+     * Restricciones únicas de username y email. Son los nombres que PostgreSQL da a los
+     * UNIQUE de V1__Create_users_table.sql; con ddl-auto (H2) se crean con el mismo nombre.
+     * UserService traduce sus violaciones a 409 por campo.
+     */
+    public static final String USERNAME_CONSTRAINT = "users_username_key";
+    public static final String EMAIL_CONSTRAINT = "users_email_key";
+
+    /**
+     * Secuencia de IDs (ver V5__Use_pooled_sequence_for_users_id.sql).
+     */
+    public static final String ID_SEQUENCE = "users_seq";
+
+    /**
+     * IDs reservados por cada llamada a la secuencia. Con IDENTITY Hibernate necesita el ID
+     * generado por cada INSERT y no puede agruparlos en batches JDBC; con la secuencia
+     * asigna los IDs en memoria y envía los INSERT en lotes (hibernate.jdbc.batch_size).
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
-    @Column(unique = true, nullable = false, length = 50)
+    @Column(nullable = false, length = 50)
     private String username;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
 
     @Column(name = "full_name", length = 100)
@@ -36,6 +63,14 @@ public class User {
     @Builder.Default
     private Boolean active = true;
 
+    /**
+     * Estado del alta en Keycloak (asíncrona, ver KeycloakProvisioningWorker).
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "provisioning_status", nullable = false, length = 20)
+    @Builder.Default
+    private ProvisioningStatus provisioningStatus = ProvisioningStatus.COMPLETED;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
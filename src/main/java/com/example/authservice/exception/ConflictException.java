@@ -0,0 +1,21 @@
+package com.example.authservice.exception;
+
+/**
+ * La operación choca con el estado actual de un recurso (ej: un username o email que ya
+ * pertenece a otro usuario).
+ *
+ * GlobalExceptionHandler la traduce a 409, con el campo en conflicto en validationErrors.
+ */
+public class ConflictException extends RuntimeException {
+
+    private final String field;
+
+    public ConflictException(String field, String message) {
+        super(message);
+        this.field = field;
+    }
+
+    public String getField() {
+        return field;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.authservice.exception;
+
+import java.time.Duration;
+
+/**
+ * Una dependencia externa (ej: Keycloak) no está disponible y la operación no se acepta.
+ *
+ * GlobalExceptionHandler la traduce a 503 con la cabecera Retry-After.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
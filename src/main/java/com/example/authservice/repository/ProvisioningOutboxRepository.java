@@ -0,0 +1,54 @@
+package com.example.authservice.repository;
+
+import com.example.authservice.entity.ProvisioningOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio JPA para el outbox de operaciones contra Keycloak.
+ * 
+ * "open" son los estados sin terminar (PENDING y PROCESSING).
+ */
+@Repository
+public interface ProvisioningOutboxRepository extends JpaRepository<ProvisioningOutboxEntry, Long> {
+
+    /**
+     * Entradas listas para procesar: pendientes cuyo backoff terminó, o en PROCESSING
+     * cuyo plazo venció (el worker que la tomó se detuvo). Solo la entrada más antigua
+     * sin terminar de cada username, para que sus operaciones se apliquen en orden.
+     */
+    @Query("select e.id from ProvisioningOutboxEntry e " +
+           "where e.status in :open and e.nextAttemptAt <= :now " +
+           "and not exists (select o.id from ProvisioningOutboxEntry o " +
+           "                where o.username = e.username and o.id < e.id and o.status in :open) " +
+           "order by e.id")
+    List<Long> findDueIds(Collection<ProvisioningOutboxEntry.Status> open, LocalDateTime now, Pageable pageable);
+
+    /**
+     * Toma una entrada para procesarla. El UPDATE condicional garantiza que una sola
+     * réplica la obtiene.
+     *
+     * @return 1 si se tomó la entrada
+     */
+    @Transactional
+    @Modifying
+    @Query("update ProvisioningOutboxEntry e " +
+           "set e.status = :processing, e.attempts = e.attempts + 1, " +
+           "    e.nextAttemptAt = :leaseUntil, e.updatedAt = :now " +
+           "where e.id = :id and e.status in :open and e.nextAttemptAt <= :now")
+    int claim(Long id, Collection<ProvisioningOutboxEntry.Status> open, ProvisioningOutboxEntry.Status processing,
+              LocalDateTime now, LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ProvisioningOutboxEntry e where e.status = :status and e.updatedAt < :before")
+    int deleteByStatusUpdatedBefore(ProvisioningOutboxEntry.Status status, LocalDateTime before);
+}
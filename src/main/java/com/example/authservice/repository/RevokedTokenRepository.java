@@ -0,0 +1,25 @@
+package com.example.authservice.repository;
+
+import com.example.authservice.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repositorio JPA para las revocaciones de tokens.
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    /**
+     * Siguiente bloque de revocaciones posteriores a la última leída (lectura incremental).
+     */
+    List<RevokedToken> findTop500ByIdGreaterThanAndExpiresAtGreaterThanOrderByIdAsc(Long lastSeenId, Long now);
+
+    @Modifying
+    @Query("delete from RevokedToken r where r.expiresAt < :now")
+    int deleteExpired(Long now);
+}
@@ -0,0 +1,57 @@
+package com.example.authservice.repository;
+
+import com.example.authservice.entity.User;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reserva IDs de usuario de la secuencia users_seq para los inserts por JDBC
+ * (importación masiva, reconciliación).
+ *
+ * Sigue el mismo esquema "pooled" que Hibernate usa para la entidad User: cada valor N
+ * de la secuencia (que avanza de User.ID_ALLOCATION_SIZE en User.ID_ALLOCATION_SIZE) reserva
+ * los IDs N - ID_ALLOCATION_SIZE + 1 .. N. Así los IDs asignados aquí y los asignados por
+ * Hibernate nunca coinciden, y cada bloque de inserts necesita una sola consulta.
+ */
+@Repository
+public class UserIdSequence {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile String nextValuesSql;
+
+    public UserIdSequence(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return count IDs nuevos, en orden creciente
+     */
+    public List<Long> next(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int blocks = (count - ids.size() + User.ID_ALLOCATION_SIZE - 1) / User.ID_ALLOCATION_SIZE;
+            for (Long high : jdbcTemplate.queryForList(nextValuesSql(), Long.class, blocks)) {
+                // El primer valor de la secuencia (1) solo reserva el propio 1
+                for (long id = Math.max(1, high - User.ID_ALLOCATION_SIZE + 1); id <= high && ids.size() < count; id++) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private String nextValuesSql() {
+        if (nextValuesSql == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            nextValuesSql = "PostgreSQL".equals(product)
+                    ? "select nextval('" + User.ID_SEQUENCE + "') from generate_series(1, ?)"
+                    : "select next value for " + User.ID_SEQUENCE + " from system_range(1, ?)";
+        }
+        return nextValuesSql;
+    }
+}
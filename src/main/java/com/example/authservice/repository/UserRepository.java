@@ -1,9 +1,16 @@
 package com.example.authservice.repository;
 
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.entity.ProvisioningStatus;
 import com.example.authservice.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -11,15 +18,77 @@ import java.util.Optional;
  * 
  * Spring Data JPA proporciona automáticamente implementaciones
  * para los métodos estándar (save, findById, findAll, etc.)
+ * 
+ * Las lecturas de la API (findDtoById, findPageAfter, search*) devuelven DTOs directamente
+ * (constructor expression) en transacciones de solo lectura: no hay entidades gestionadas,
+ * ni snapshot en el persistence context, ni dirty checking al terminar.
  */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    /**
+     * Orden de relevancia de la búsqueda: username exacto, prefijo de username, de email,
+     * de nombre completo y, por último, el resto de coincidencias (subcadena).
+     */
+    String SEARCH_RANK = "case when lower(u.username) = :term then 0 " +
+            "when lower(u.username) like :prefix escape '!' then 1 " +
+            "when lower(u.email) like :prefix escape '!' then 2 " +
+            "when lower(u.fullName) like :prefix escape '!' then 3 else 4 end";
+    
     Optional<User> findByUsername(String username);
     
     Optional<User> findByEmail(String email);
     
-    boolean existsByUsername(String username);
+    /**
+     * Usuario por ID leído directamente como DTO (carga de UserCache).
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.authservice.dto.UserDTO(u.id, u.username, u.email, u.fullName, u.active, " +
+           "u.provisioningStatus) from User u where u.id = :id")
+    Optional<UserDTO> findDtoById(Long id);
+    
+    /**
+     * Página del listado por keyset: los usuarios con ID mayor que afterId, en orden de ID.
+     * 
+     * Lee solo las columnas del DTO (sin entidades gestionadas) y usa el índice de la clave
+     * primaria, así que el coste no depende de la página pedida, a diferencia de OFFSET.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.authservice.dto.UserDTO(u.id, u.username, u.email, u.fullName, u.active, " +
+           "u.provisioningStatus) from User u where u.id > :afterId order by u.id")
+    List<UserDTO> findPageAfter(Long afterId, Limit limit);
+    
+    /**
+     * Usuarios cuyo username, email o nombre completo empiezan por el término, por relevancia.
+     * 
+     * term va en minúsculas; prefix es el término con los comodines escapados con '!' seguido
+     * de '%'. En PostgreSQL usa los índices btree lower(...) text_pattern_ops de V6.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.authservice.dto.UserDTO(u.id, u.username, u.email, u.fullName, u.active, " +
+           "u.provisioningStatus) from User u " +
+           "where lower(u.username) like :prefix escape '!' or lower(u.email) like :prefix escape '!' " +
+           "or lower(u.fullName) like :prefix escape '!' " +
+           "order by " + SEARCH_RANK + ", lower(u.username)")
+    List<UserDTO> searchByPrefix(String term, String prefix, Limit limit);
+    
+    /**
+     * Usuarios cuyo username, email o nombre completo contienen el término, por relevancia
+     * (las coincidencias por prefijo primero).
+     * 
+     * contains es '%' + término escapado + '%'. En PostgreSQL usa los índices GIN de trigramas
+     * de V6, que necesitan términos de al menos 3 caracteres.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.authservice.dto.UserDTO(u.id, u.username, u.email, u.fullName, u.active, " +
+           "u.provisioningStatus) from User u " +
+           "where lower(u.username) like :contains escape '!' or lower(u.email) like :contains escape '!' " +
+           "or lower(u.fullName) like :contains escape '!' " +
+           "order by " + SEARCH_RANK + ", lower(u.username)")
+    List<UserDTO> searchBySubstring(String term, String prefix, String contains, Limit limit);
     
-    boolean existsByEmail(String email);
+    @Transactional
+    @Modifying
+    @Query("update User u set u.provisioningStatus = :status where u.id = :id")
+    int updateProvisioningStatus(Long id, ProvisioningStatus status);
 }
@@ -0,0 +1,229 @@
+package com.example.authservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gestiona el token de administrador de Keycloak (Client Credentials Grant).
+ *
+ * Antes cada alta o baja de usuario pedía un token nuevo, con un round trip completo
+ * al endpoint de tokens de Keycloak. Este gestor:
+ * - Reutiliza el token hasta poco antes de su expires_in
+ * - Dentro de la ventana de refresco (keycloak.admin-token.refresh-before-expiry) sigue
+ *   devolviendo el token vigente y pide uno nuevo en segundo plano
+ * - Comparte una única petición en curso entre todos los hilos (single-flight),
+ *   evitando la estampida contra Keycloak al expirar el token
+ *
+ * Publica keycloak.admin.token.age y keycloak.admin.token.refresh.failures.
+ */
+@Service
+@Slf4j
+public class KeycloakAdminTokenManager {
+
+    /**
+     * Margen para no enviar un token a punto de expirar (latencia de red, relojes).
+     */
+    private static final long EXPIRY_MARGIN_MILLIS = 5_000;
+
+    /**
+     * Relativa a keycloak.url (rootUri del RestTemplate).
+     */
+    private static final String TOKEN_PATH = "/realms/{realm}/protocol/openid-connect/token";
+
+    private final RestTemplate restTemplate;
+    private final Executor executor;
+    private final String realm;
+    private final String clientId;
+    private final String clientSecret;
+    private final long refreshBeforeExpiryMillis;
+    private final Counter refreshFailures;
+
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlight = new AtomicReference<>();
+    private volatile CachedToken current;
+
+    public KeycloakAdminTokenManager(RestTemplate restTemplate,
+                                     @Qualifier("applicationTaskExecutor") Executor executor,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${keycloak.realm:master}") String realm,
+                                     @Value("${keycloak.client-id:spring-auth-service}") String clientId,
+                                     @Value("${keycloak.client-secret:}") String clientSecret,
+                                     @Value("${keycloak.admin-token.refresh-before-expiry:30s}") Duration refreshBeforeExpiry) {
+        this.restTemplate = restTemplate;
+        this.executor = executor;
+        this.realm = realm;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.refreshBeforeExpiryMillis = refreshBeforeExpiry.toMillis();
+        this.refreshFailures = Counter.builder("keycloak.admin.token.refresh.failures")
+                .description("Peticiones fallidas del token de administrador de Keycloak")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.admin.token.age", this, KeycloakAdminTokenManager::tokenAgeSeconds)
+                .description("Segundos desde que se obtuvo el token de administrador en uso")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Devuelve un token de administrador vigente.
+     *
+     * @return el access token, o null si no se pudo obtener (el error ya se registró en el log)
+     */
+    public String getAccessToken() {
+        // Validar que el client_secret esté configurado
+        if (clientSecret == null || clientSecret.trim().isEmpty()) {
+            log.error("KEYCLOAK_CLIENT_SECRET no está configurado. " +
+                    "Obtén el secret desde Keycloak: Clients > {} > Credentials > Secret", clientId);
+            return null;
+        }
+
+        CachedToken token = current;
+        long now = System.currentTimeMillis();
+        if (token != null && now < token.expiresAtMillis()) {
+            if (now >= token.refreshAtMillis()) {
+                // Refresco proactivo: el token actual sigue siendo válido mientras llega el nuevo
+                refresh(true);
+            }
+            return token.value();
+        }
+
+        try {
+            return refresh(false).join().value();
+        } catch (CompletionException e) {
+            // Ya registrado en requestToken
+            return null;
+        }
+    }
+
+    /**
+     * Descarta el token en caché (ej: Keycloak respondió 401 con él).
+     */
+    public void invalidate(String token) {
+        CachedToken cached = current;
+        if (cached != null && cached.value().equals(token)) {
+            current = null;
+        }
+    }
+
+    /**
+     * Pide un token nuevo, o se une a la petición que ya está en curso.
+     *
+     * @param async true para ejecutar la petición en el applicationTaskExecutor
+     */
+    private CompletableFuture<CachedToken> refresh(boolean async) {
+        while (true) {
+            CompletableFuture<CachedToken> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<CachedToken> future = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, future)) {
+                continue;
+            }
+            Runnable task = () -> {
+                try {
+                    CachedToken token = requestToken();
+                    current = token;
+                    inFlight.set(null);
+                    future.complete(token);
+                } catch (Throwable e) {
+                    refreshFailures.increment();
+                    inFlight.set(null);
+                    future.completeExceptionally(e);
+                }
+            };
+            if (async) {
+                try {
+                    executor.execute(task);
+                } catch (RuntimeException e) {
+                    // Pool saturado: se reintentará en la siguiente llamada
+                    inFlight.set(null);
+                    future.completeExceptionally(e);
+                }
+            } else {
+                task.run();
+            }
+            return future;
+        }
+    }
+
+    private CachedToken requestToken() {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+            MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+            body.add("grant_type", "client_credentials");
+            body.add("client_id", clientId);
+            body.add("client_secret", clientSecret);
+
+            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
+
+            ParameterizedTypeReference<Map<String, Object>> responseType =
+                    new ParameterizedTypeReference<Map<String, Object>>() {};
+            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+                    TOKEN_PATH, HttpMethod.POST, request, responseType, realm);
+
+            Map<String, Object> responseBody = response.getBody();
+            if (!response.getStatusCode().is2xxSuccessful() || responseBody == null
+                    || !(responseBody.get("access_token") instanceof String accessToken)) {
+                log.error("Error obteniendo token de Keycloak. Status: {}, Response: {}",
+                        response.getStatusCode(), responseBody);
+                throw new IllegalStateException("Respuesta inválida del endpoint de tokens: " + response.getStatusCode());
+            }
+
+            long fetchedAt = System.currentTimeMillis();
+            long lifetimeMillis = responseBody.get("expires_in") instanceof Number expiresIn
+                    ? expiresIn.longValue() * 1000 : 60_000;
+            long expiresAt = fetchedAt + lifetimeMillis - Math.min(EXPIRY_MARGIN_MILLIS, lifetimeMillis / 10);
+            long refreshAt = fetchedAt + lifetimeMillis - Math.min(refreshBeforeExpiryMillis, lifetimeMillis / 2);
+            log.debug("Token de administrador de Keycloak obtenido (expira en {} s)", lifetimeMillis / 1000);
+            return new CachedToken(accessToken, fetchedAt, Math.min(refreshAt, expiresAt), expiresAt);
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 401) {
+                log.error("Error 401: Client secret inválido o cliente no tiene Service Account habilitado. " +
+                        "Verifica: 1) KEYCLOAK_CLIENT_SECRET está correcto, 2) Cliente tiene 'Service Accounts Enabled' = ON");
+            } else {
+                log.error("Error HTTP al obtener token de Keycloak: {}", e.getStatusCode(), e);
+            }
+            throw e;
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Excepción al obtener token de Keycloak. Realm: {}", realm, e);
+            throw e;
+        }
+    }
+
+    private double tokenAgeSeconds() {
+        CachedToken token = current;
+        if (token == null) {
+            return Double.NaN;
+        }
+        return (System.currentTimeMillis() - token.fetchedAtMillis()) / 1000.0;
+    }
+
+    private record CachedToken(String value, long fetchedAtMillis, long refreshAtMillis, long expiresAtMillis) {
+    }
+}
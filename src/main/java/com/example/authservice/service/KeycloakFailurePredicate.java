@@ -0,0 +1,28 @@
+package com.example.authservice.service;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.function.Predicate;
+
+/**
+ * Decide qué errores de KeycloakService cuentan como fallo para los circuit breakers
+ * (resilience4j.circuitbreaker.configs.keycloak.record-failure-predicate).
+ *
+ * Un 4xx de la Admin API (datos rechazados, rol inexistente...) indica un problema de la petición,
+ * no que Keycloak esté caído: no debe abrir el circuito. Sí cuentan los 401 (token de administrador
+ * no aceptado), los 429, los 5xx, los timeouts y los errores de red.
+ */
+public class KeycloakFailurePredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        // KeycloakService envuelve los errores HTTP en RuntimeException
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException e) {
+                int status = e.getStatusCode().value();
+                return status == 401 || status == 429;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.authservice.service;
+
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.entity.ProvisioningOutboxEntry;
+import com.example.authservice.entity.ProvisioningStatus;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.ProvisioningOutboxRepository;
+import com.example.authservice.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aprovisionamiento asíncrono de usuarios en Keycloak (transactional outbox).
+ *
+ * UserService ya no llama a Keycloak dentro de su transacción (lo que retenía una conexión
+ * de BD y un hilo de Tomcat durante toda la llamada remota y podía dejar ambos sistemas
+ * inconsistentes). En su lugar registra la operación en provisioning_outbox en la misma
+ * transacción que la fila de users, y este worker:
+ * 1. Lee periódicamente un lote de entradas listas (keycloak.provisioning.batch-size)
+ * 2. Toma cada una con un UPDATE condicional (seguro con varias réplicas)
+ * 3. Las ejecuta en paralelo en provisioningExecutor (las de un mismo username, en orden) sin
+ *    esperar a que terminen, para no retener el hilo del scheduler; nunca hay más de
+ *    batch-size operaciones en curso
+ * 4. Reintenta los fallos con backoff exponencial hasta max-attempts; después la marca FAILED
+ *
+ * Mientras los circuit breakers de Keycloak están abiertos no se toman entradas, y una operación
+ * rechazada por el circuito se pospone sin consumir intentos.
+ *
+ * El estado del alta se refleja en users.provisioning_status (campo provisioningStatus de UserDTO).
+ * Publica keycloak.provisioning.operations con los tags "operation" y "result".
+ */
+@Service
+@Slf4j
+public class KeycloakProvisioningWorker {
+
+    private static final List<ProvisioningOutboxEntry.Status> OPEN =
+            List.of(ProvisioningOutboxEntry.Status.PENDING, ProvisioningOutboxEntry.Status.PROCESSING);
+
+    private final ProvisioningOutboxRepository outboxRepository;
+    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final KeycloakService keycloakService;
+    private final TokenRevocationService tokenRevocationService;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    /** Entradas tomadas cuya operación no ha terminado */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Value("${keycloak.provisioning.batch-size:50}")
+    private int batchSize;
+
+    @Value("${keycloak.provisioning.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${keycloak.provisioning.initial-backoff:2s}")
+    private Duration initialBackoff;
+
+    @Value("${keycloak.provisioning.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${keycloak.provisioning.processing-timeout:2m}")
+    private Duration processingTimeout;
+
+    @Value("${keycloak.provisioning.retention:7d}")
+    private Duration retention;
+
+    public KeycloakProvisioningWorker(ProvisioningOutboxRepository outboxRepository,
+                                      UserRepository userRepository,
+                                      UserCache userCache,
+                                      KeycloakService keycloakService,
+                                      TokenRevocationService tokenRevocationService,
+                                      ObjectMapper objectMapper,
+                                      @Qualifier("provisioningExecutor") Executor executor,
+                                      MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.keycloakService = keycloakService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Registra el alta en Keycloak; debe llamarse dentro de la transacción que inserta el usuario.
+     *
+     * @param temporaryPassword null si el usuario ya existe en Keycloak y conserva su password
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueCreate(User user, String temporaryPassword) {
+        CreatePayload payload = new CreatePayload(user.getEmail(), user.getFullName(), user.getActive(),
+                temporaryPassword);
+        enqueue(ProvisioningOutboxEntry.Operation.CREATE_USER, user, toJson(payload));
+    }
+
+    /**
+     * Registra la baja en Keycloak; debe llamarse dentro de la transacción que elimina el usuario.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueDelete(User user) {
+        enqueue(ProvisioningOutboxEntry.Operation.DELETE_USER, user, null);
+    }
+
+    @Scheduled(fixedDelayString = "${keycloak.provisioning.poll-interval:1000}")
+    public void processOutbox() {
+        if (!keycloakService.isAvailable(KeycloakService.CREATE_USER)
+                && !keycloakService.isAvailable(KeycloakService.DELETE_USER)) {
+            return;
+        }
+        int capacity = batchSize - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = outboxRepository.findDueIds(OPEN, now, PageRequest.of(0, capacity));
+        if (dueIds.isEmpty()) {
+            return;
+        }
+
+        // Las entradas tomadas quedan en PROCESSING hasta leaseUntil: las siguientes ejecuciones
+        // del scheduler no las vuelven a tomar aunque sigan en curso
+        LocalDateTime leaseUntil = now.plus(processingTimeout);
+        int claimed = 0;
+        for (Long id : dueIds) {
+            if (outboxRepository.claim(id, OPEN, ProvisioningOutboxEntry.Status.PROCESSING, now, leaseUntil) == 1) {
+                inFlight.incrementAndGet();
+                executor.execute(() -> {
+                    try {
+                        process(id);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+                claimed++;
+            }
+        }
+        log.debug("Lote de aprovisionamiento enviado: {} operaciones", claimed);
+    }
+
+    /**
+     * Elimina las entradas completadas más antiguas que keycloak.provisioning.retention.
+     */
+    @Scheduled(fixedDelayString = "${keycloak.provisioning.purge-interval:3600000}")
+    public void purgeCompleted() {
+        int deleted = outboxRepository.deleteByStatusUpdatedBefore(ProvisioningOutboxEntry.Status.COMPLETED,
+                LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.debug("{} entradas completadas eliminadas de provisioning_outbox", deleted);
+        }
+    }
+
+    private void enqueue(ProvisioningOutboxEntry.Operation operation, User user, String payload) {
+        outboxRepository.save(ProvisioningOutboxEntry.builder()
+                .operation(operation)
+                .userId(user.getId())
+                .username(user.getUsername())
+                .payload(payload)
+                .status(ProvisioningOutboxEntry.Status.PENDING)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+
+    private void process(Long id) {
+        ProvisioningOutboxEntry entry = outboxRepository.findById(id).orElse(null);
+        if (entry == null) {
+            return;
+        }
+        try {
+            switch (entry.getOperation()) {
+                case CREATE_USER -> create(entry);
+                case DELETE_USER -> delete(entry);
+            }
+            entry.setStatus(ProvisioningOutboxEntry.Status.COMPLETED);
+            entry.setPayload(null);
+            entry.setLastError(null);
+            outboxRepository.save(entry);
+            record(entry, "completed");
+        } catch (Exception e) {
+            fail(entry, e);
+        }
+    }
+
+    private void create(ProvisioningOutboxEntry entry) {
+        CreatePayload payload = fromJson(entry.getPayload());
+        UserDTO userDTO = UserDTO.builder()
+                .username(entry.getUsername())
+                .email(payload.email())
+                .fullName(payload.fullName())
+                .active(payload.active())
+                .build();
+        keycloakService.createUserInKeycloak(userDTO, payload.temporaryPassword());
+        userRepository.updateProvisioningStatus(entry.getUserId(), ProvisioningStatus.COMPLETED);
+        userCache.evict(entry.getUserId());
+        log.info("Usuario '{}' aprovisionado en Keycloak", entry.getUsername());
+    }
+
+    private void delete(ProvisioningOutboxEntry entry) {
+        // Los access tokens ya emitidos siguen siendo válidos hasta su expiración:
+        // se revocan todos los del usuario (ver TokenRevocationService)
+        String keycloakUserId = keycloakService.deleteUserFromKeycloak(entry.getUsername());
+        if (keycloakUserId != null) {
+            tokenRevocationService.revokeSubject(keycloakUserId);
+        }
+    }
+
+    private void fail(ProvisioningOutboxEntry entry, Exception e) {
+        entry.setLastError(truncate(e.getMessage()));
+        if (e instanceof CallNotPermittedException) {
+            // Keycloak no llegó a recibir la llamada: no cuenta como intento
+            entry.setAttempts(entry.getAttempts() - 1);
+            entry.setStatus(ProvisioningOutboxEntry.Status.PENDING);
+            entry.setNextAttemptAt(LocalDateTime.now().plus(initialBackoff));
+            record(entry, "rejected");
+        } else if (entry.getAttempts() >= maxAttempts) {
+            log.error("Operación {} para '{}' fallida tras {} intentos", entry.getOperation(),
+                    entry.getUsername(), entry.getAttempts(), e);
+            entry.setStatus(ProvisioningOutboxEntry.Status.FAILED);
+            // El password temporal no debe quedar en la base de datos
+            entry.setPayload(null);
+            if (entry.getOperation() == ProvisioningOutboxEntry.Operation.CREATE_USER) {
+                userRepository.updateProvisioningStatus(entry.getUserId(), ProvisioningStatus.FAILED);
+                userCache.evict(entry.getUserId());
+            }
+            record(entry, "failed");
+        } else {
+            Duration backoff = backoff(entry.getAttempts());
+            log.warn("Operación {} para '{}' fallida (intento {}), reintento en {} s: {}", entry.getOperation(),
+                    entry.getUsername(), entry.getAttempts(), backoff.toSeconds(), e.getMessage());
+            entry.setStatus(ProvisioningOutboxEntry.Status.PENDING);
+            entry.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+            record(entry, "retried");
+        }
+        outboxRepository.save(entry);
+    }
+
+    /**
+     * Backoff exponencial con jitter (entre la mitad y el total del intervalo).
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts - 1, 20);
+        millis = Math.min(millis, maxBackoff.toMillis());
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+    }
+
+    private void record(ProvisioningOutboxEntry entry, String result) {
+        meterRegistry.counter("keycloak.provisioning.operations",
+                "operation", entry.getOperation().name(), "result", result).increment();
+    }
+
+    private String toJson(CreatePayload payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la operación de aprovisionamiento", e);
+        }
+    }
+
+    private CreatePayload fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, CreatePayload.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Operación de aprovisionamiento ilegible", e);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    /**
+     * Datos del alta guardados en provisioning_outbox.payload.
+     */
+    record CreatePayload(String email, String fullName, Boolean active, String temporaryPassword) {
+    }
+}
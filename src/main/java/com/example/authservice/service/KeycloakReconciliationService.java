@@ -0,0 +1,582 @@
+package com.example.authservice.service;
+
+import com.example.authservice.config.ReplicaRoutingDataSource;
+import com.example.authservice.dto.ReconciliationReportDTO;
+import com.example.authservice.entity.ProvisioningStatus;
+import com.example.authservice.repository.UserIdSequence;
+import com.example.authservice.service.KeycloakService.KeycloakUser;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reconciliación entre los usuarios de Keycloak y la tabla users.
+ *
+ * Los usuarios creados o eliminados directamente en Keycloak (consola de administración,
+ * otros servicios) no se reflejan en la base de datos local. Este job, programado
+ * (keycloak.reconciliation.cron) o a demanda (POST /users/reconcile), vuelve a alinearlas
+ * tomando Keycloak como fuente de verdad:
+ * - Usuario solo en Keycloak: se crea en local (provisioningStatus COMPLETED)
+ * - Usuario en ambos con email, nombre o estado distintos: se actualiza en local
+ * - Usuario solo en local, ya aprovisionado y anterior al inicio de la reconciliación:
+ *   si Keycloak confirma que no existe, se elimina en local
+ *
+ * Para procesar millones de usuarios en minutos y con memoria constante:
+ * - Las páginas de la Admin API (first/max) se piden en paralelo, con como mucho
+ *   keycloak.reconciliation.parallelism páginas en vuelo, y se consumen en orden
+ * - Keycloak devuelve los usuarios ordenados por username y la tabla users se lee con un cursor
+ *   ordenado por lower(username): ambos flujos se combinan con un merge ordenado. Si alguno
+ *   no llega ordenado (ej: Keycloak sobre una base de datos con otra collation), la
+ *   reconciliación se aborta en lugar de tomar usuarios existentes por ausentes
+ * - Los cambios se aplican en lotes JDBC de keycloak.reconciliation.batch-size, cada uno en su transacción
+ *
+ * Con dryRun solo se cuentan los cambios. Publica keycloak.reconciliation.progress,
+ * keycloak.reconciliation.running, keycloak.reconciliation.fixes (tags "action" y "dry_run")
+ * y keycloak.reconciliation.duration.
+ */
+@Service
+@Slf4j
+public class KeycloakReconciliationService {
+
+    private static final String SELECT_SQL =
+            "select id, username, email, full_name, active, provisioning_status, created_at " +
+            "from users order by lower(username)";
+
+    private static final String INSERT_SQL =
+            "insert into users (id, username, email, full_name, active, provisioning_status, created_at) " +
+            "values (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL =
+            "update users set email = ?, full_name = ?, active = ?, updated_at = ? where id = ?";
+
+    private static final String DELETE_SQL = "delete from users where id = ?";
+
+    private static final int USERNAME_MAX_LENGTH = 50;
+    private static final int FULL_NAME_MAX_LENGTH = 100;
+    private static final long PROGRESS_LOG_INTERVAL = 100_000;
+
+    private static final RowMapper<LocalUser> LOCAL_USER_MAPPER = (rs, rowNum) -> new LocalUser(
+            rs.getLong("id"),
+            rs.getString("username"),
+            rs.getString("email"),
+            rs.getString("full_name"),
+            rs.getBoolean("active"),
+            rs.getString("provisioning_status"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserIdSequence userIdSequence;
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate batchTransaction;
+    private final KeycloakService keycloakService;
+    private final UserCache userCache;
+    private final Executor executor;
+    private final Executor runExecutor;
+    private final MeterRegistry meterRegistry;
+    private final int pageSize;
+    private final int parallelism;
+    private final int batchSize;
+    private final boolean scheduledDryRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong progress = new AtomicLong();
+    private volatile String selectSql;
+
+    public KeycloakReconciliationService(DataSource dataSource,
+                                         JdbcTemplate jdbcTemplate,
+                                         UserIdSequence userIdSequence,
+                                         PlatformTransactionManager transactionManager,
+                                         KeycloakService keycloakService,
+                                         UserCache userCache,
+                                         @Qualifier("reconciliationExecutor") Executor executor,
+                                         @Qualifier("reconciliationRunExecutor") Executor runExecutor,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${keycloak.reconciliation.page-size:500}") int pageSize,
+                                         @Value("${keycloak.reconciliation.parallelism:4}") int parallelism,
+                                         @Value("${keycloak.reconciliation.batch-size:500}") int batchSize,
+                                         @Value("${keycloak.reconciliation.dry-run:false}") boolean scheduledDryRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userIdSequence = userIdSequence;
+        // Cursor de lectura propio: el fetchSize evita cargar la tabla entera en memoria
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(batchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.keycloakService = keycloakService;
+        this.userCache = userCache;
+        this.executor = executor;
+        this.runExecutor = runExecutor;
+        this.meterRegistry = meterRegistry;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.scheduledDryRun = scheduledDryRun;
+        Gauge.builder("keycloak.reconciliation.progress", progress, AtomicLong::get)
+                .description("Usuarios de Keycloak procesados por la reconciliación en curso (o la última)")
+                .baseUnit("users")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.reconciliation.running", running, r -> r.get() ? 1 : 0)
+                .description("1 si hay una reconciliación en curso")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lanza la reconciliación en reconciliationRunExecutor para no retener el hilo del scheduler.
+     */
+    @Scheduled(cron = "${keycloak.reconciliation.cron:-}")
+    public void scheduledReconciliation() {
+        try {
+            runExecutor.execute(() -> {
+                try {
+                    reconcile(scheduledDryRun);
+                } catch (RuntimeException e) {
+                    log.error("Reconciliación programada con Keycloak fallida: {}", e.getMessage(), e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("Reconciliación programada omitida: la anterior sigue en curso");
+        }
+    }
+
+    /**
+     * Ejecuta una reconciliación completa (solo una a la vez por instancia).
+     *
+     * @param dryRun true para calcular los cambios sin aplicarlos
+     * @throws RuntimeException si ya hay una en curso, Keycloak falla o los datos no llegan ordenados
+     */
+    public ReconciliationReportDTO reconcile(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Ya hay una reconciliación con Keycloak en curso");
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "failed";
+        try {
+            Run run = new Run(dryRun);
+            // En PostgreSQL el cursor solo lee por bloques (fetchSize) dentro de una transacción.
+            // Siempre en la principal: decide altas y bajas a partir de lo leído
+            ReplicaRoutingDataSource.onPrimary(() -> readOnlyTransaction.executeWithoutResult(status -> run.execute()));
+            result = "completed";
+            ReconciliationReportDTO report = run.report();
+            log.info("Reconciliación con Keycloak terminada{}: {}", dryRun ? " (dry-run)" : "", report);
+            return report;
+        } catch (CompletionException e) {
+            // Error al leer una página de Keycloak
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        } finally {
+            sample.stop(Timer.builder("keycloak.reconciliation.duration")
+                    .description("Duración de la reconciliación con Keycloak")
+                    .tag("result", result)
+                    .register(meterRegistry));
+            running.set(false);
+        }
+    }
+
+    private String selectSql() {
+        if (selectSql == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            // Con la collation "C" PostgreSQL ordena como String.compareTo, que es lo que usa el merge
+            // (índice idx_users_username_lower_c, ver V4)
+            selectSql = SELECT_SQL + ("PostgreSQL".equals(product) ? " collate \"C\"" : "");
+        }
+        return selectSql;
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Estado de una ejecución.
+     */
+    private final class Run {
+
+        private final boolean dryRun;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+
+        private final List<KeycloakUser> inserts = new ArrayList<>();
+        private final List<Update> updates = new ArrayList<>();
+        private final List<LocalUser> deletes = new ArrayList<>();
+
+        private String lastKeycloakKey;
+        private String lastLocalKey;
+        private long keycloakUsers;
+        private long localUsers;
+        private long created;
+        private long updated;
+        private long deleted;
+        private long skipped;
+        private long errors;
+
+        private Run(boolean dryRun) {
+            this.dryRun = dryRun;
+            progress.set(0);
+        }
+
+        private void execute() {
+            try (KeycloakPages pages = new KeycloakPages();
+                 Stream<LocalUser> stream = cursorJdbcTemplate.queryForStream(selectSql(), LOCAL_USER_MAPPER)) {
+                Iterator<LocalUser> localIterator = stream.iterator();
+                KeycloakUser remote = nextRemote(pages);
+                LocalUser local = nextLocal(localIterator);
+                while (remote != null || local != null) {
+                    int cmp = remote == null ? 1 : local == null ? -1 : key(remote.username()).compareTo(local.key());
+                    if (cmp < 0) {
+                        onlyInKeycloak(remote);
+                        remote = nextRemote(pages);
+                    } else if (cmp > 0) {
+                        onlyLocal(local);
+                        local = nextLocal(localIterator);
+                    } else {
+                        inBoth(remote, local);
+                        remote = nextRemote(pages);
+                        local = nextLocal(localIterator);
+                    }
+                }
+                flushInserts();
+                flushUpdates();
+                flushDeletes();
+            }
+        }
+
+        private KeycloakUser nextRemote(KeycloakPages pages) {
+            while (true) {
+                KeycloakUser user = pages.next();
+                if (user == null) {
+                    return null;
+                }
+                String key = key(user.username());
+                int cmp = lastKeycloakKey == null ? 1 : key.compareTo(lastKeycloakKey);
+                if (cmp < 0) {
+                    throw new IllegalStateException("Keycloak no devuelve los usuarios ordenados por username ('"
+                            + lastKeycloakKey + "' antes de '" + key + "'); reconciliación abortada");
+                }
+                if (cmp == 0) {
+                    // Repetido en el borde de dos páginas (alta concurrente en Keycloak)
+                    continue;
+                }
+                lastKeycloakKey = key;
+                keycloakUsers++;
+                if (progress.incrementAndGet() % PROGRESS_LOG_INTERVAL == 0) {
+                    log.info("Reconciliación con Keycloak: {} usuarios procesados", progress.get());
+                }
+                return user;
+            }
+        }
+
+        private LocalUser nextLocal(Iterator<LocalUser> iterator) {
+            while (iterator.hasNext()) {
+                LocalUser user = iterator.next();
+                int cmp = lastLocalKey == null ? 1 : user.key().compareTo(lastLocalKey);
+                if (cmp < 0) {
+                    throw new IllegalStateException("La tabla users no se leyó ordenada por username ('"
+                            + lastLocalKey + "' antes de '" + user.key() + "'); reconciliación abortada");
+                }
+                localUsers++;
+                if (cmp == 0) {
+                    // Usernames que solo difieren en mayúsculas: Keycloak no puede tener ambos
+                    log.warn("Usuario local '{}' duplicado sin distinguir mayúsculas; se omite", user.username());
+                    record("skipped", 1);
+                    continue;
+                }
+                lastLocalKey = user.key();
+                return user;
+            }
+            return null;
+        }
+
+        private void onlyInKeycloak(KeycloakUser remote) {
+            if (remote.email() == null || remote.email().isBlank()
+                    || remote.username().length() > USERNAME_MAX_LENGTH) {
+                // users.email es obligatorio y users.username tiene como mucho 50 caracteres
+                log.debug("Usuario de Keycloak '{}' sin email o con username demasiado largo; se omite",
+                        remote.username());
+                record("skipped", 1);
+                return;
+            }
+            inserts.add(remote);
+            if (inserts.size() >= batchSize) {
+                flushInserts();
+            }
+        }
+
+        private void onlyLocal(LocalUser local) {
+            // Altas pendientes o fallidas todavía no están en Keycloak; las posteriores al inicio
+            // pueden haberse creado después de leer su página
+            if (!ProvisioningStatus.COMPLETED.name().equals(local.provisioningStatus())
+                    || !local.createdAt().isBefore(startedAt)) {
+                return;
+            }
+            deletes.add(local);
+            if (deletes.size() >= batchSize) {
+                flushDeletes();
+            }
+        }
+
+        private void inBoth(KeycloakUser remote, LocalUser local) {
+            String email = remote.email() == null || remote.email().isBlank()
+                    || remote.email().equalsIgnoreCase(local.email()) ? local.email() : remote.email();
+            String fullName = fullName(remote);
+            if (fullName == null) {
+                fullName = local.fullName();
+            }
+            if (email.equals(local.email()) && Objects.equals(fullName, local.fullName())
+                    && remote.enabled() == local.active()) {
+                return;
+            }
+            updates.add(new Update(local.id(), email, fullName, remote.enabled()));
+            if (updates.size() >= batchSize) {
+                flushUpdates();
+            }
+        }
+
+        private void flushInserts() {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            Map<KeycloakUser, Long> ids = new IdentityHashMap<>();
+            apply(INSERT_SQL, inserts, batch -> {
+                // IDs reservados de la secuencia por bloques, en la transacción de escritura del lote:
+                // la transacción exterior es de solo lectura y PostgreSQL rechaza ahí nextval()
+                Iterator<Long> next = userIdSequence.next(batch.size()).iterator();
+                batch.forEach(user -> ids.put(user, next.next()));
+            }, (ps, user) -> {
+                ps.setLong(1, ids.get(user));
+                ps.setString(2, user.username());
+                ps.setString(3, user.email());
+                ps.setString(4, fullName(user));
+                ps.setBoolean(5, user.enabled());
+                ps.setString(6, ProvisioningStatus.COMPLETED.name());
+                ps.setTimestamp(7, now);
+            }, "created");
+        }
+
+        private void flushUpdates() {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Long> ids = updates.stream().map(Update::id).toList();
+            apply(UPDATE_SQL, updates, (ps, update) -> {
+                ps.setString(1, update.email());
+                ps.setString(2, update.fullName());
+                ps.setBoolean(3, update.active());
+                ps.setTimestamp(4, now);
+                ps.setLong(5, update.id());
+            }, "updated");
+            evict(ids);
+        }
+
+        private void flushDeletes() {
+            // Un usuario puede faltar en las páginas si Keycloak cambió mientras se leían:
+            // solo se borra si la búsqueda exacta confirma que no existe
+            List<LocalUser> confirmed = new ArrayList<>(deletes.size());
+            for (LocalUser local : deletes) {
+                if (keycloakService.userExists(local.username())) {
+                    record("skipped", 1);
+                } else {
+                    confirmed.add(local);
+                }
+            }
+            deletes.clear();
+            List<Long> ids = confirmed.stream().map(LocalUser::id).toList();
+            apply(DELETE_SQL, confirmed, (ps, local) -> ps.setLong(1, local.id()), "deleted");
+            evict(ids);
+        }
+
+        private void evict(List<Long> ids) {
+            if (!dryRun && !ids.isEmpty()) {
+                userCache.evictAll(ids);
+            }
+        }
+
+        /**
+         * Aplica un lote en una transacción; si falla, fila a fila para aislar las que no se pueden aplicar.
+         */
+        private <T> void apply(String sql, List<T> rows, ParameterizedPreparedStatementSetter<T> setter,
+                               String action) {
+            apply(sql, rows, batch -> { }, setter, action);
+        }
+
+        /**
+         * @param prepare se ejecuta dentro de la transacción de cada lote (o fila) antes de escribirlo
+         */
+        private <T> void apply(String sql, List<T> rows, Consumer<List<T>> prepare,
+                               ParameterizedPreparedStatementSetter<T> setter, String action) {
+            if (rows.isEmpty()) {
+                return;
+            }
+            if (dryRun) {
+                record(action, rows.size());
+                rows.clear();
+                return;
+            }
+            try {
+                batchTransaction.executeWithoutResult(status -> {
+                    prepare.accept(rows);
+                    jdbcTemplate.batchUpdate(sql, rows, rows.size(), setter);
+                });
+                record(action, rows.size());
+            } catch (DataAccessException e) {
+                log.warn("Lote de reconciliación ({}) fallido, se aplica fila a fila: {}", action, e.getMessage());
+                for (T row : rows) {
+                    try {
+                        batchTransaction.executeWithoutResult(status -> {
+                            prepare.accept(List.of(row));
+                            jdbcTemplate.update(sql, ps -> setter.setValues(ps, row));
+                        });
+                        record(action, 1);
+                    } catch (DuplicateKeyException ex) {
+                        // Email o username ya usados por otro usuario local
+                        record("skipped", 1);
+                    } catch (DataAccessException ex) {
+                        log.warn("Cambio de reconciliación ({}) fallido: {}", action, ex.getMessage());
+                        record("error", 1);
+                    }
+                }
+            }
+            rows.clear();
+        }
+
+        private void record(String action, long count) {
+            switch (action) {
+                case "created" -> created += count;
+                case "updated" -> updated += count;
+                case "deleted" -> deleted += count;
+                case "skipped" -> skipped += count;
+                default -> errors += count;
+            }
+            meterRegistry.counter("keycloak.reconciliation.fixes", "action", action,
+                    "dry_run", Boolean.toString(dryRun)).increment(count);
+        }
+
+        private ReconciliationReportDTO report() {
+            return ReconciliationReportDTO.builder()
+                    .dryRun(dryRun)
+                    .startedAt(startedAt)
+                    .durationMillis(Duration.ofNanos(System.nanoTime() - startNanos).toMillis())
+                    .keycloakUsers(keycloakUsers)
+                    .localUsers(localUsers)
+                    .created(created)
+                    .updated(updated)
+                    .deleted(deleted)
+                    .skipped(skipped)
+                    .errors(errors)
+                    .build();
+        }
+    }
+
+    /**
+     * Nombre completo local a partir de firstName y lastName de Keycloak (null si no tiene).
+     */
+    private static String fullName(KeycloakUser user) {
+        String fullName = ((user.firstName() != null ? user.firstName() : "") + " "
+                + (user.lastName() != null ? user.lastName() : "")).trim();
+        if (fullName.isEmpty()) {
+            return null;
+        }
+        return fullName.length() <= FULL_NAME_MAX_LENGTH ? fullName : fullName.substring(0, FULL_NAME_MAX_LENGTH);
+    }
+
+    /**
+     * Usuarios de Keycloak en orden, leyendo por adelantado hasta "parallelism" páginas en paralelo.
+     */
+    private final class KeycloakPages implements AutoCloseable {
+
+        private final Deque<CompletableFuture<List<KeycloakUser>>> inFlight = new ArrayDeque<>();
+        private Iterator<KeycloakUser> current = Collections.emptyIterator();
+        private int nextFirst;
+        private boolean lastPageSeen;
+
+        /**
+         * @return el siguiente usuario, o null si no hay más
+         */
+        private KeycloakUser next() {
+            while (!current.hasNext()) {
+                if (lastPageSeen) {
+                    return null;
+                }
+                fill();
+                CompletableFuture<List<KeycloakUser>> page = inFlight.removeFirst();
+                // Se pide la siguiente página mientras se espera y se procesa esta
+                fill();
+                List<KeycloakUser> users = page.join();
+                if (users.size() < pageSize) {
+                    // Última página: las pedidas por adelantado después de esta sobran
+                    lastPageSeen = true;
+                    close();
+                }
+                current = users.iterator();
+            }
+            return current.next();
+        }
+
+        private void fill() {
+            while (!lastPageSeen && inFlight.size() < parallelism) {
+                int first = nextFirst;
+                nextFirst += pageSize;
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> keycloakService.listUsers(first, pageSize),
+                        executor));
+            }
+        }
+
+        @Override
+        public void close() {
+            inFlight.forEach(page -> page.cancel(true));
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Fila de la tabla users.
+     */
+    private record LocalUser(long id, String username, String email, String fullName, boolean active,
+                             String provisioningStatus, LocalDateTime createdAt) {
+
+        String key() {
+            return KeycloakReconciliationService.key(username);
+        }
+    }
+
+    /**
+     * Cambio pendiente sobre un usuario local.
+     */
+    private record Update(long id, String email, String fullName, boolean active) {
+    }
+}
@@ -1,17 +1,23 @@
 package com.example.authservice.service;
 
 import com.example.authservice.dto.UserDTO;
-import lombok.RequiredArgsConstructor;
+import com.example.authservice.exception.ServiceUnavailableException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -24,133 +30,184 @@ import java.util.*;
  * - Sincronizar usuarios entre sistemas
  * - Provisionar usuarios automáticamente
  * - Mantener una fuente de verdad (Keycloak) para autenticación
+ * 
+ * Los IDs de roles y de usuarios (por username) se guardan en cachés acotadas con TTL
+ * (keycloak.cache.*), de modo que un alta hace dos llamadas (crear + asignar rol)
+ * en lugar de cuatro.
+ * 
+ * Cada operación pública pasa por su propio circuit breaker (resilience4j.circuitbreaker.instances.*):
+ * si Keycloak falla o va lento (ventana deslizante con tasa de fallos y de llamadas lentas),
+ * el circuito se abre y las llamadas fallan al instante con CallNotPermittedException en lugar
+ * de esperar el read-timeout; tras wait-duration-in-open-state deja pasar unas llamadas de prueba
+ * (half-open). Mientras está abierto, keycloak.circuit-breaker.fallback decide qué hacen las
+ * peticiones que dependen de Keycloak (ver ensureAvailable).
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class KeycloakService {
 
-    private final RestTemplate restTemplate;
+    public static final String CREATE_USER = "keycloak-create-user";
+    public static final String IMPORT_USERS = "keycloak-import-users";
+    public static final String DELETE_USER = "keycloak-delete-user";
+    public static final String LIST_USERS = "keycloak-list-users";
+    public static final String USER_EXISTS = "keycloak-user-exists";
+
+    /**
+     * Qué hacer con las peticiones que dependen de Keycloak mientras su circuito está abierto.
+     */
+    public enum Fallback {
+        /** Aceptarlas y dejar la operación en el outbox (KeycloakProvisioningWorker la reintenta) */
+        QUEUE,
+        /** Rechazarlas al momento con 503 y Retry-After */
+        FAIL_FAST
+    }
+
+    /**
+     * Usuario de Keycloak (representación breve de la Admin API).
+     */
+    public record KeycloakUser(String id, String username, String email, String firstName, String lastName,
+                               boolean enabled) {
+    }
 
-    @Value("${keycloak.url:http://localhost:8080}")
-    private String keycloakUrl;
+    private final RestTemplate restTemplate;
+    private final KeycloakAdminTokenManager adminTokenManager;
+    private final String realm;
+    private final Cache<String, String> roleIds;
+    private final Cache<String, String> userIds;
+    private final Fallback fallback;
+    private final Map<String, CircuitBreaker> circuitBreakers = new HashMap<>();
 
-    @Value("${keycloak.realm:master}")
-    private String realm;
+    public KeycloakService(RestTemplate restTemplate,
+                           KeycloakAdminTokenManager adminTokenManager,
+                           MeterRegistry meterRegistry,
+                           CircuitBreakerRegistry circuitBreakerRegistry,
+                           @Value("${keycloak.realm:master}") String realm,
+                           @Value("${keycloak.circuit-breaker.fallback:QUEUE}") Fallback fallback,
+                           @Value("${keycloak.cache.role-id-ttl:1h}") Duration roleIdTtl,
+                           @Value("${keycloak.cache.user-id-ttl:10m}") Duration userIdTtl,
+                           @Value("${keycloak.cache.user-id-maximum-size:10000}") long userIdMaximumSize) {
+        this.restTemplate = restTemplate;
+        this.adminTokenManager = adminTokenManager;
+        this.realm = realm;
+        this.roleIds = Caffeine.newBuilder()
+                .maximumSize(100)
+                .expireAfterWrite(roleIdTtl)
+                .recordStats()
+                .build();
+        this.userIds = Caffeine.newBuilder()
+                .maximumSize(userIdMaximumSize)
+                .expireAfterWrite(userIdTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, roleIds, "keycloak.role-ids");
+        CaffeineCacheMetrics.monitor(meterRegistry, userIds, "keycloak.user-ids");
+        
+        this.fallback = fallback;
+        for (String name : List.of(CREATE_USER, IMPORT_USERS, DELETE_USER, LIST_USERS, USER_EXISTS)) {
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+            // El estado y las llamadas se publican como resilience4j.circuitbreaker.*; las transiciones, aquí
+            circuitBreaker.getEventPublisher().onStateTransition(event -> {
+                log.warn("Circuit breaker '{}': {} -> {}", name, event.getStateTransition().getFromState(),
+                        event.getStateTransition().getToState());
+                meterRegistry.counter("keycloak.circuit-breaker.transitions", "name", name,
+                        "from", event.getStateTransition().getFromState().name(),
+                        "to", event.getStateTransition().getToState().name()).increment();
+            });
+            circuitBreakers.put(name, circuitBreaker);
+        }
+    }
 
-    @Value("${keycloak.client-id:spring-auth-service}")
-    private String clientId;
+    /**
+     * Indica si el circuit breaker de la operación deja pasar llamadas (CLOSED o HALF_OPEN).
+     */
+    public boolean isAvailable(String operation) {
+        CircuitBreaker.State state = circuitBreakers.get(operation).getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
 
-    @Value("${keycloak.client-secret:}")
-    private String clientSecret;
+    /**
+     * Con keycloak.circuit-breaker.fallback=FAIL_FAST, rechaza la petición si el circuito
+     * de la operación está abierto; con QUEUE no hace nada (la operación espera en el outbox).
+     * 
+     * @throws ServiceUnavailableException si la petición no debe aceptarse (503)
+     */
+    public void ensureAvailable(String operation) {
+        if (fallback == Fallback.FAIL_FAST && !isAvailable(operation)) {
+            CircuitBreaker circuitBreaker = circuitBreakers.get(operation);
+            Duration retryAfter = Duration.ofMillis(circuitBreaker.getCircuitBreakerConfig()
+                    .getWaitIntervalFunctionInOpenState().apply(1));
+            throw new ServiceUnavailableException("Keycloak no está disponible temporalmente", retryAfter);
+        }
+    }
 
     /**
      * Obtiene un token de administrador usando Service Account (Client Credentials Grant).
+     * El token se reutiliza y refresca en KeycloakAdminTokenManager.
      * 
      * Ver INDUSTRY_PRACTICES.md para más detalles sobre este patrón.
      */
     private String getAdminToken() {
-        // Validar que el client_secret esté configurado
-        if (clientSecret == null || clientSecret.trim().isEmpty()) {
-            log.error("KEYCLOAK_CLIENT_SECRET no está configurado. " +
-                    "Obtén el secret desde Keycloak: Clients > {} > Credentials > Secret", clientId);
-            return null;
-        }
-        
-        try {
-            String url = String.format("%s/realms/%s/protocol/openid-connect/token", keycloakUrl, realm);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            
-            MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
-            body.add("grant_type", "client_credentials");
-            body.add("client_id", clientId);
-            body.add("client_secret", clientSecret);
-            
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
-            
-            ParameterizedTypeReference<Map<String, Object>> responseType = 
-                    new ParameterizedTypeReference<Map<String, Object>>() {};
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url, HttpMethod.POST, request, responseType);
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                return (String) response.getBody().get("access_token");
-            }
-            
-            log.error("Error obteniendo token de Keycloak. Status: {}, Response: {}", 
-                    response.getStatusCode(), response.getBody());
-            return null;
-        } catch (HttpClientErrorException e) {
-            if (e.getStatusCode().value() == 401) {
-                log.error("Error 401: Client secret inválido o cliente no tiene Service Account habilitado. " +
-                        "Verifica: 1) KEYCLOAK_CLIENT_SECRET está correcto, 2) Cliente tiene 'Service Accounts Enabled' = ON");
-            } else {
-                log.error("Error HTTP al obtener token de Keycloak: {}", e.getStatusCode(), e);
-            }
-            return null;
-        } catch (Exception e) {
-            log.error("Excepción al obtener token de Keycloak. URL: {}/realms/{}/protocol/openid-connect/token", 
-                    keycloakUrl, realm, e);
-            return null;
-        }
+        return adminTokenManager.getAccessToken();
     }
 
     /**
-     * Crea un usuario en Keycloak.
+     * Crea un usuario en Keycloak y le asigna el rol USER.
+     * 
+     * Es idempotente para poder reintentarse (KeycloakProvisioningWorker): si el usuario
+     * ya existe, solo se (re)asigna el rol.
      * 
      * Nota: Para producción, ver mejoras recomendadas en SECURITY.md
      * (envío de password por email, políticas más estrictas, etc.)
      */
     public void createUserInKeycloak(UserDTO userDTO, String temporaryPassword) {
+        circuitBreakers.get(CREATE_USER).executeRunnable(() -> createUser(userDTO, temporaryPassword));
+    }
+
+    private void createUser(UserDTO userDTO, String temporaryPassword) {
         String token = getAdminToken();
         if (token == null) {
             throw new RuntimeException("No se pudo obtener token de administrador de Keycloak");
         }
 
         try {
-            String url = String.format("%s/admin/realms/%s/users", keycloakUrl, realm);
-            
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(token);
             
-            Map<String, Object> userData = new HashMap<>();
-            userData.put("username", userDTO.getUsername());
-            userData.put("email", userDTO.getEmail());
-            userData.put("firstName", extractFirstName(userDTO.getFullName()));
-            userData.put("lastName", extractLastName(userDTO.getFullName()));
-            userData.put("enabled", userDTO.getActive() != null ? userDTO.getActive() : true);
-            userData.put("emailVerified", false);
-            
-            // Credenciales con password temporal
-            List<Map<String, Object>> credentials = new ArrayList<>();
-            Map<String, Object> credential = new HashMap<>();
-            credential.put("type", "password");
-            credential.put("value", temporaryPassword);
-            credential.put("temporary", true); // Requiere cambio en primer login
-            credentials.add(credential);
-            userData.put("credentials", credentials);
+            Map<String, Object> userData = toUserRepresentation(userDTO, temporaryPassword);
             
             HttpEntity<Map<String, Object>> request = new HttpEntity<>(userData, headers);
             
-            ResponseEntity<Void> response = restTemplate.postForEntity(url, request, Void.class);
+            ResponseEntity<Void> response = restTemplate.postForEntity(
+                    "/admin/realms/{realm}/users", request, Void.class, realm);
             
             if (response.getStatusCode().is2xxSuccessful()) {
                 log.info("Usuario '{}' creado exitosamente en Keycloak", userDTO.getUsername());
                 
+                // El ID viene en la cabecera Location (.../users/{id}); si no, se busca por username
+                String userId = userIdFromLocation(response.getHeaders().getLocation());
+                if (userId != null) {
+                    userIds.put(userDTO.getUsername(), userId);
+                } else {
+                    userId = getUserIdByUsername(userDTO.getUsername(), token);
+                }
+                
                 // Asignar rol USER por defecto
-                assignDefaultRole(userDTO.getUsername(), token);
+                assignDefaultRole(userDTO.getUsername(), userId, token);
             } else {
                 log.error("Error creando usuario en Keycloak: {}", response.getStatusCode());
                 throw new RuntimeException("Error al crear usuario en Keycloak: " + response.getStatusCode());
             }
         } catch (HttpClientErrorException e) {
             if (e.getStatusCode().value() == 409) {
+                // Idempotencia: un intento anterior pudo crear el usuario y fallar al asignar el rol
                 log.warn("Usuario '{}' ya existe en Keycloak", userDTO.getUsername());
-                // No lanzamos excepción, solo logueamos (idempotencia)
+                assignDefaultRole(userDTO.getUsername(), getUserIdByUsername(userDTO.getUsername(), token), token);
             } else {
+                if (e.getStatusCode().value() == 401) {
+                    // Token revocado o invalidado en Keycloak: la siguiente llamada pedirá uno nuevo
+                    adminTokenManager.invalidate(token);
+                }
                 log.error("Error HTTP al crear usuario en Keycloak", e);
                 throw new RuntimeException("Error al crear usuario en Keycloak: " + e.getMessage(), e);
             }
@@ -161,28 +218,115 @@ public class KeycloakService {
     }
 
     /**
-     * Asigna el rol USER por defecto a un usuario.
+     * Crea un bloque de usuarios con una sola llamada a la Partial Import API de Keycloak,
+     * con el rol USER ya asignado. Los usuarios que ya existen en Keycloak se omiten (SKIP).
+     * 
+     * @param temporaryPasswords password temporal de cada usuario, en el mismo orden
+     * @return ID en Keycloak de cada usuario creado, por username
+     * @throws RuntimeException si Keycloak no pudo procesar el bloque (CallNotPermittedException
+     *         si el circuito está abierto)
      */
-    private void assignDefaultRole(String username, String token) {
+    public Map<String, String> importUsers(List<UserDTO> users, List<String> temporaryPasswords) {
+        return circuitBreakers.get(IMPORT_USERS).executeSupplier(() -> partialImport(users, temporaryPasswords));
+    }
+
+    private Map<String, String> partialImport(List<UserDTO> users, List<String> temporaryPasswords) {
+        String token = getAdminToken();
+        if (token == null) {
+            throw new RuntimeException("No se pudo obtener token de administrador de Keycloak");
+        }
+        
+        List<Map<String, Object>> representations = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            Map<String, Object> userData = toUserRepresentation(users.get(i), temporaryPasswords.get(i));
+            userData.put("realmRoles", List.of("USER"));
+            representations.add(userData);
+        }
+        
+        Map<String, Object> body = new HashMap<>();
+        body.put("ifResourceExists", "SKIP");
+        body.put("users", representations);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(token);
+        
         try {
-            // Obtener ID del usuario
-            String userId = getUserIdByUsername(username, token);
-            if (userId == null) {
-                log.warn("No se pudo encontrar el ID del usuario '{}' en Keycloak", username);
-                return;
-            }
+            ParameterizedTypeReference<Map<String, Object>> responseType = 
+                    new ParameterizedTypeReference<Map<String, Object>>() {};
+            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+                    "/admin/realms/{realm}/partialImport", HttpMethod.POST, new HttpEntity<>(body, headers),
+                    responseType, realm);
             
-            // Obtener el rol USER
-            String roleId = getRoleId("USER", token);
-            if (roleId == null) {
-                log.warn("No se pudo encontrar el rol USER en Keycloak");
-                return;
+            Map<String, String> createdIds = new HashMap<>();
+            Object results = response.getBody() != null ? response.getBody().get("results") : null;
+            if (results instanceof List<?> list) {
+                for (Object item : list) {
+                    if (item instanceof Map<?, ?> result && "ADDED".equals(result.get("action"))
+                            && result.get("resourceName") instanceof String username
+                            && result.get("id") instanceof String id) {
+                        createdIds.put(username, id);
+                        userIds.put(username, id);
+                    }
+                }
             }
-            
+            log.info("{} usuarios importados en Keycloak ({} ya existían)", createdIds.size(),
+                    users.size() - createdIds.size());
+            return createdIds;
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 401) {
+                adminTokenManager.invalidate(token);
+            }
+            log.error("Error HTTP al importar usuarios en Keycloak", e);
+            throw new RuntimeException("Error al importar usuarios en Keycloak: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Representación de usuario de la Admin API, con password temporal si se indica.
+     */
+    private Map<String, Object> toUserRepresentation(UserDTO userDTO, String temporaryPassword) {
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("username", userDTO.getUsername());
+        userData.put("email", userDTO.getEmail());
+        userData.put("firstName", extractFirstName(userDTO.getFullName()));
+        userData.put("lastName", extractLastName(userDTO.getFullName()));
+        userData.put("enabled", userDTO.getActive() != null ? userDTO.getActive() : true);
+        userData.put("emailVerified", false);
+        if (temporaryPassword == null) {
+            // Usuario que ya existía en Keycloak (importación): no se le asigna password
+            return userData;
+        }
+        
+        // Credenciales con password temporal
+        List<Map<String, Object>> credentials = new ArrayList<>();
+        Map<String, Object> credential = new HashMap<>();
+        credential.put("type", "password");
+        credential.put("value", temporaryPassword);
+        credential.put("temporary", true); // Requiere cambio en primer login
+        credentials.add(credential);
+        userData.put("credentials", credentials);
+        return userData;
+    }
+
+    /**
+     * Asigna el rol USER por defecto a un usuario (asignar un rol ya asignado no falla).
+     */
+    private void assignDefaultRole(String username, String userId, String token) {
+        if (userId == null) {
+            throw new RuntimeException("No se pudo encontrar el ID del usuario '" + username + "' en Keycloak");
+        }
+        
+        // Obtener el rol USER
+        String roleId = getRoleId("USER", token);
+        if (roleId == null) {
+            // Configuración del realm, no un fallo transitorio: reintentar no lo arreglaría
+            log.warn("El rol USER no existe en el realm '{}'; el usuario '{}' queda sin rol", realm, username);
+            return;
+        }
+        
+        try {
             // Asignar rol
-            String url = String.format("%s/admin/realms/%s/users/%s/role-mappings/realm", 
-                    keycloakUrl, realm, userId);
-            
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(token);
@@ -192,98 +336,216 @@ public class KeycloakService {
             role.put("name", "USER");
             
             HttpEntity<List<Map<String, Object>>> request = new HttpEntity<>(List.of(role), headers);
-            restTemplate.postForEntity(url, request, Void.class);
+            restTemplate.postForEntity("/admin/realms/{realm}/users/{id}/role-mappings/realm",
+                    request, Void.class, realm, userId);
             
             log.info("Rol USER asignado al usuario '{}' en Keycloak", username);
-        } catch (Exception e) {
-            log.error("Error asignando rol USER al usuario '{}'", username, e);
-            // No lanzamos excepción, solo logueamos (no crítico)
+        } catch (HttpClientErrorException.NotFound e) {
+            // El rol pudo recrearse en Keycloak con otro ID
+            roleIds.invalidate("USER");
+            throw e;
         }
     }
 
     /**
-     * Obtiene el ID de un usuario por su username.
+     * Obtiene el ID de un usuario por su username (búsqueda exacta, con caché).
+     * 
+     * @return el ID, o null si el usuario no existe (los errores de Keycloak se propagan)
      */
     private String getUserIdByUsername(String username, String token) {
-        try {
-            String url = String.format("%s/admin/realms/%s/users?username=%s", keycloakUrl, realm, username);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(token);
-            
-            HttpEntity<Void> request = new HttpEntity<>(headers);
-            ParameterizedTypeReference<List<Map<String, Object>>> responseType = 
-                    new ParameterizedTypeReference<List<Map<String, Object>>>() {};
-            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                    url, HttpMethod.GET, request, responseType);
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                List<Map<String, Object>> users = response.getBody();
-                if (!users.isEmpty()) {
-                    return (String) users.get(0).get("id");
-                }
+        String cached = userIds.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        return findUserId(username, token);
+    }
+
+    /**
+     * Busca el ID de un usuario en Keycloak sin pasar por la caché, y la actualiza con el resultado.
+     *
+     * @return el ID, o null si el usuario no existe (los errores de Keycloak se propagan)
+     */
+    private String findUserId(String username, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+        ParameterizedTypeReference<List<Map<String, Object>>> responseType = 
+                new ParameterizedTypeReference<List<Map<String, Object>>>() {};
+        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                "/admin/realms/{realm}/users?username={username}&exact=true", HttpMethod.GET, request, responseType,
+                realm, username);
+        
+        if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+            List<Map<String, Object>> users = response.getBody();
+            if (!users.isEmpty()) {
+                String userId = (String) users.get(0).get("id");
+                userIds.put(username, userId);
+                return userId;
             }
-        } catch (Exception e) {
-            log.error("Error obteniendo ID del usuario '{}'", username, e);
         }
+        userIds.invalidate(username);
         return null;
     }
 
     /**
-     * Obtiene el ID de un rol por su nombre.
+     * Obtiene el ID de un rol por su nombre (con caché: casi nunca cambia).
+     *
+     * @return el ID, o null si el rol no existe en el realm. Los demás errores de Keycloak
+     *         (5xx, timeouts) se propagan para que la operación se reintente y cuente en el circuito
      */
     private String getRoleId(String roleName, String token) {
+        String cached = roleIds.getIfPresent(roleName);
+        if (cached != null) {
+            return cached;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+        ParameterizedTypeReference<Map<String, Object>> responseType =
+                new ParameterizedTypeReference<Map<String, Object>>() {};
+        ResponseEntity<Map<String, Object>> response;
         try {
-            String url = String.format("%s/admin/realms/%s/roles/%s", keycloakUrl, realm, roleName);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(token);
-            
-            HttpEntity<Void> request = new HttpEntity<>(headers);
-            ParameterizedTypeReference<Map<String, Object>> responseType = 
-                    new ParameterizedTypeReference<Map<String, Object>>() {};
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url, HttpMethod.GET, request, responseType);
+            response = restTemplate.exchange("/admin/realms/{realm}/roles/{role}", HttpMethod.GET, request,
+                    responseType, realm, roleName);
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+
+        String roleId = response.getBody() != null ? (String) response.getBody().get("id") : null;
+        if (roleId != null) {
+            roleIds.put(roleName, roleId);
+        }
+        return roleId;
+    }
+
+    /**
+     * Devuelve una página de usuarios del realm (orden de Keycloak: por username).
+     * 
+     * @param first posición del primer usuario (desde 0)
+     * @param max tamaño de la página; una página más corta indica que no hay más usuarios
+     * @throws RuntimeException si Keycloak no pudo devolver la página (CallNotPermittedException
+     *         si el circuito está abierto)
+     */
+    public List<KeycloakUser> listUsers(int first, int max) {
+        return circuitBreakers.get(LIST_USERS).executeSupplier(() -> fetchUsers(first, max));
+    }
+
+    private List<KeycloakUser> fetchUsers(int first, int max) {
+        String token = getAdminToken();
+        if (token == null) {
+            throw new RuntimeException("No se pudo obtener token de administrador de Keycloak");
+        }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        
+        try {
+            ParameterizedTypeReference<List<Map<String, Object>>> responseType = 
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {};
+            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                    "/admin/realms/{realm}/users?first={first}&max={max}&briefRepresentation=true", HttpMethod.GET,
+                    new HttpEntity<>(headers), responseType, realm, first, max);
             
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                return (String) response.getBody().get("id");
+            List<Map<String, Object>> body = response.getBody() != null ? response.getBody() : List.of();
+            List<KeycloakUser> users = new ArrayList<>(body.size());
+            for (Map<String, Object> user : body) {
+                users.add(new KeycloakUser((String) user.get("id"), (String) user.get("username"),
+                        (String) user.get("email"), (String) user.get("firstName"), (String) user.get("lastName"),
+                        !Boolean.FALSE.equals(user.get("enabled"))));
             }
-        } catch (Exception e) {
-            log.error("Error obteniendo ID del rol '{}'", roleName, e);
+            return users;
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 401) {
+                adminTokenManager.invalidate(token);
+            }
+            throw new RuntimeException("Error al listar usuarios de Keycloak: " + e.getMessage(), e);
         }
-        return null;
+    }
+
+    /**
+     * Comprueba si un usuario existe en Keycloak (búsqueda exacta por username).
+     *
+     * No usa la caché de IDs: un usuario eliminado directamente en Keycloak seguiría
+     * constando como existente hasta que caducara su entrada.
+     */
+    public boolean userExists(String username) {
+        return circuitBreakers.get(USER_EXISTS).executeSupplier(() -> {
+            String token = getAdminToken();
+            if (token == null) {
+                throw new RuntimeException("No se pudo obtener token de administrador de Keycloak");
+            }
+            return findUserId(username, token) != null;
+        });
     }
 
     /**
      * Elimina un usuario de Keycloak.
+     * 
+     * @return ID del usuario en Keycloak (subject de sus tokens), o null si no existía
+     * @throws RuntimeException si Keycloak no pudo procesar la baja o el circuito está abierto
+     *         (el llamador reintenta)
      */
-    public void deleteUserFromKeycloak(String username) {
+    public String deleteUserFromKeycloak(String username) {
+        return circuitBreakers.get(DELETE_USER).executeSupplier(() -> deleteUser(username));
+    }
+
+    private String deleteUser(String username) {
         String token = getAdminToken();
         if (token == null) {
-            log.warn("No se pudo obtener token de administrador de Keycloak para eliminar usuario");
-            return;
+            throw new RuntimeException("No se pudo obtener token de administrador de Keycloak");
         }
 
         try {
             String userId = getUserIdByUsername(username, token);
             if (userId == null) {
                 log.warn("Usuario '{}' no encontrado en Keycloak", username);
-                return;
+                return null;
             }
             
-            String url = String.format("%s/admin/realms/%s/users/%s", keycloakUrl, realm, userId);
-            
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(token);
             
             HttpEntity<Void> request = new HttpEntity<>(headers);
-            restTemplate.exchange(url, HttpMethod.DELETE, request, Void.class);
+            try {
+                restTemplate.exchange("/admin/realms/{realm}/users/{id}", HttpMethod.DELETE, request, Void.class,
+                        realm, userId);
+            } catch (HttpClientErrorException.NotFound e) {
+                // ID en caché obsoleto (usuario recreado fuera de este servicio): se busca de nuevo una vez
+                userIds.invalidate(username);
+                userId = getUserIdByUsername(username, token);
+                if (userId == null) {
+                    log.warn("Usuario '{}' no encontrado en Keycloak", username);
+                    return null;
+                }
+                restTemplate.exchange("/admin/realms/{realm}/users/{id}", HttpMethod.DELETE, request, Void.class,
+                        realm, userId);
+            }
+            userIds.invalidate(username);
             
             log.info("Usuario '{}' eliminado exitosamente de Keycloak", username);
+            return userId;
         } catch (Exception e) {
             log.error("Error eliminando usuario '{}' de Keycloak", username, e);
-            // No lanzamos excepción, solo logueamos (no crítico si falla)
+            throw new RuntimeException("Error al eliminar usuario de Keycloak: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extrae el ID del usuario de la cabecera Location de la respuesta de creación
+     * (.../admin/realms/{realm}/users/{id}).
+     */
+    private static String userIdFromLocation(URI location) {
+        if (location == null || location.getPath() == null) {
+            return null;
+        }
+        String path = location.getPath();
+        int slash = path.lastIndexOf('/');
+        if (slash < 0 || slash == path.length() - 1) {
+            return null;
         }
+        return path.substring(slash + 1);
     }
 
     /**
@@ -0,0 +1,84 @@
+package com.example.authservice.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom concurrente para el camino rápido de "token no revocado".
+ * 
+ * Solo admite inserciones; como las revocaciones expiran, TokenRevocationService
+ * reconstruye un filtro nuevo periódicamente con las entradas vigentes.
+ * Cada clave lleva un tipo (jti o subject) para no tener que concatenar strings.
+ */
+class RevocationBloomFilter {
+
+    static final int JTI = 0x9E3779B9;
+    static final int SUBJECT = 0x85EBCA6B;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    /**
+     * @param expectedInsertions Número esperado de revocaciones vigentes
+     * @param falsePositiveRate  Tasa de falsos positivos deseada (ej: 0.01)
+     */
+    RevocationBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, m);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    void put(int type, String key) {
+        long hash = hash(type, key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(int type, String key) {
+        long hash = hash(type, key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(int combinedHash) {
+        return (combinedHash & 0x7FFFFFFFL) % bitCount;
+    }
+
+    /**
+     * Hash de 64 bits (mezcla de MurmurHash3) sobre los caracteres de la clave.
+     */
+    private static long hash(int type, String key) {
+        long h = type;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0xC6A4A7935BD1E995L;
+            h ^= h >>> 47;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
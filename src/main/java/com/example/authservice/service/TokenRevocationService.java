@@ -0,0 +1,236 @@
+package com.example.authservice.service;
+
+import com.example.authservice.entity.RevokedToken;
+import com.example.authservice.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Servicio de revocación de tokens antes de su expiración.
+ * 
+ * Consultar la introspección de Keycloak en cada petición es demasiado lento, así que
+ * las revocaciones se guardan en la tabla revoked_tokens y cada réplica mantiene una
+ * copia en memoria:
+ * - Por jti: revoca un token concreto hasta su "exp"
+ * - Por subject: revoca los tokens del usuario emitidos hasta el momento de la revocación
+ *   (ej: al eliminar el usuario), durante security.jwt.revocation.max-token-lifetime
+ * 
+ * Un filtro de Bloom delante de los mapas hace que el caso común ("no revocado")
+ * no toque ningún mapa. Las entradas se purgan solas al expirar y las réplicas
+ * se sincronizan leyendo la tabla de forma incremental por id.
+ *
+ * Los ids se asignan al insertar, no al confirmar: una transacción lenta puede confirmar
+ * un id menor que otro ya leído. Los ids saltados se recuerdan como huecos y se vuelven a
+ * consultar en cada lectura durante security.jwt.revocation.gap-timeout (pasado ese tiempo
+ * se dan por transacciones deshechas o filas ya purgadas).
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    /** Ids saltados que se recuerdan a la vez (ej: tras purgar muchas filas expiradas) */
+    private static final int MAX_GAPS = 10_000;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Duration maxTokenLifetime;
+    private final long expectedRevocations;
+    private final Duration gapTimeout;
+    private final Counter revokedTokenHits;
+
+    /** jti -> expiración (epoch en segundos) */
+    private final ConcurrentMap<String, Long> revokedJtis = new ConcurrentHashMap<>();
+    /** subject -> revocación vigente */
+    private final ConcurrentMap<String, SubjectRevocation> revokedSubjects = new ConcurrentHashMap<>();
+
+    private volatile RevocationBloomFilter bloomFilter;
+    private long lastSeenId;
+    /** id saltado -> momento (epoch en ms) en que se dejará de buscar */
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${security.jwt.revocation.max-token-lifetime:1h}") Duration maxTokenLifetime,
+                                  @Value("${security.jwt.revocation.expected-revocations:100000}") long expectedRevocations,
+                                  @Value("${security.jwt.revocation.gap-timeout:1m}") Duration gapTimeout,
+                                  MeterRegistry meterRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.maxTokenLifetime = maxTokenLifetime;
+        this.expectedRevocations = expectedRevocations;
+        this.gapTimeout = gapTimeout;
+        this.bloomFilter = new RevocationBloomFilter(expectedRevocations, 0.01);
+        this.revokedTokenHits = Counter.builder("security.jwt.revocation.hits")
+                .description("Tokens rechazados por estar revocados")
+                .register(meterRegistry);
+        Gauge.builder("security.jwt.revocation.entries", this,
+                        service -> service.revokedJtis.size() + service.revokedSubjects.size())
+                .description("Revocaciones vigentes en memoria")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indica si el token está revocado (por jti o por subject).
+     */
+    public boolean isRevoked(Jwt jwt) {
+        RevocationBloomFilter filter = bloomFilter;
+        long now = Instant.now().getEpochSecond();
+        
+        String jti = jwt.getId();
+        if (jti != null && filter.mightContain(RevocationBloomFilter.JTI, jti)) {
+            Long expiresAt = revokedJtis.get(jti);
+            if (expiresAt != null && expiresAt >= now) {
+                revokedTokenHits.increment();
+                return true;
+            }
+        }
+        
+        String subject = jwt.getSubject();
+        if (subject != null && filter.mightContain(RevocationBloomFilter.SUBJECT, subject)) {
+            SubjectRevocation revocation = revokedSubjects.get(subject);
+            Instant issuedAt = jwt.getIssuedAt();
+            if (revocation != null && revocation.expiresAt() >= now
+                    && (issuedAt == null || issuedAt.getEpochSecond() <= revocation.revokedAt())) {
+                revokedTokenHits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Revoca un token concreto hasta su expiración.
+     */
+    @Transactional
+    public void revokeToken(String jti, Instant expiresAt) {
+        long now = Instant.now().getEpochSecond();
+        long expiration = expiresAt != null ? expiresAt.getEpochSecond() : now + maxTokenLifetime.toSeconds();
+        RevokedToken revokedToken = revokedTokenRepository.save(RevokedToken.builder()
+                .jti(jti)
+                .expiresAt(expiration)
+                .revokedAt(now)
+                .build());
+        apply(revokedToken);
+        log.info("Token con jti '{}' revocado", jti);
+    }
+
+    /**
+     * Revoca todos los tokens del subject emitidos hasta ahora.
+     */
+    @Transactional
+    public void revokeSubject(String subject) {
+        long now = Instant.now().getEpochSecond();
+        RevokedToken revokedToken = revokedTokenRepository.save(RevokedToken.builder()
+                .subject(subject)
+                .expiresAt(now + maxTokenLifetime.toSeconds())
+                .revokedAt(now)
+                .build());
+        apply(revokedToken);
+        log.info("Tokens del subject '{}' revocados", subject);
+    }
+
+    /**
+     * Lee de forma incremental las revocaciones creadas por cualquier réplica, incluidas
+     * las confirmadas después de otras con id mayor.
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.poll-interval:5000}")
+    public synchronized void pollRevocations() {
+        long now = Instant.now().getEpochSecond();
+        long nowMillis = System.currentTimeMillis();
+        pollGaps(now, nowMillis);
+        List<RevokedToken> batch;
+        do {
+            batch = revokedTokenRepository.findTop500ByIdGreaterThanAndExpiresAtGreaterThanOrderByIdAsc(lastSeenId, now);
+            for (RevokedToken revokedToken : batch) {
+                apply(revokedToken);
+                long id = revokedToken.getId();
+                for (long skipped = lastSeenId + 1; skipped < id && gaps.size() < MAX_GAPS; skipped++) {
+                    gaps.put(skipped, nowMillis + gapTimeout.toMillis());
+                }
+                lastSeenId = Math.max(lastSeenId, id);
+            }
+        } while (batch.size() == 500);
+    }
+
+    /**
+     * Vuelve a buscar los ids saltados en lecturas anteriores y olvida los que han
+     * superado gap-timeout.
+     */
+    private void pollGaps(long now, long nowMillis) {
+        gaps.values().removeIf(deadline -> deadline < nowMillis);
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        for (int from = 0; from < ids.size(); from += 500) {
+            List<Long> chunk = ids.subList(from, Math.min(from + 500, ids.size()));
+            for (RevokedToken revokedToken : revokedTokenRepository.findAllById(chunk)) {
+                gaps.remove(revokedToken.getId());
+                if (revokedToken.getExpiresAt() > now) {
+                    apply(revokedToken);
+                    log.debug("Revocación {} confirmada fuera de orden", revokedToken.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Elimina las revocaciones expiradas (memoria y tabla) y reconstruye el filtro de Bloom,
+     * que no admite borrados.
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.purge-interval:60000}")
+    @Transactional
+    public void purgeExpired() {
+        long now = Instant.now().getEpochSecond();
+        synchronized (this) {
+            revokedJtis.values().removeIf(expiresAt -> expiresAt < now);
+            revokedSubjects.values().removeIf(revocation -> revocation.expiresAt() < now);
+            
+            RevocationBloomFilter filter = new RevocationBloomFilter(expectedRevocations, 0.01);
+            revokedJtis.keySet().forEach(jti -> filter.put(RevocationBloomFilter.JTI, jti));
+            revokedSubjects.keySet().forEach(subject -> filter.put(RevocationBloomFilter.SUBJECT, subject));
+            bloomFilter = filter;
+        }
+        int deleted = revokedTokenRepository.deleteExpired(now);
+        if (deleted > 0) {
+            log.debug("{} revocaciones expiradas eliminadas", deleted);
+        }
+    }
+
+    /**
+     * Aplica una revocación en memoria. Es idempotente: la misma fila puede llegar
+     * por la revocación local y por la lectura incremental.
+     */
+    private synchronized void apply(RevokedToken revokedToken) {
+        if (revokedToken.getJti() != null) {
+            revokedJtis.merge(revokedToken.getJti(), revokedToken.getExpiresAt(), Math::max);
+            bloomFilter.put(RevocationBloomFilter.JTI, revokedToken.getJti());
+        }
+        if (revokedToken.getSubject() != null) {
+            revokedSubjects.merge(revokedToken.getSubject(),
+                    new SubjectRevocation(revokedToken.getRevokedAt(), revokedToken.getExpiresAt()),
+                    SubjectRevocation::latest);
+            bloomFilter.put(RevocationBloomFilter.SUBJECT, revokedToken.getSubject());
+        }
+    }
+
+    /**
+     * Revocación por subject: tokens con iat hasta revokedAt, vigente hasta expiresAt.
+     */
+    private record SubjectRevocation(long revokedAt, long expiresAt) {
+
+        SubjectRevocation latest(SubjectRevocation other) {
+            return new SubjectRevocation(Math.max(revokedAt, other.revokedAt),
+                    Math.max(expiresAt, other.expiresAt));
+        }
+    }
+}
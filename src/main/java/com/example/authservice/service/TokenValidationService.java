@@ -0,0 +1,143 @@
+package com.example.authservice.service;
+
+import com.example.authservice.config.KeycloakClaims;
+import com.example.authservice.config.KeycloakClaimsExtractor;
+import com.example.authservice.dto.TokenValidationResultDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Servicio para validar tokens JWT en lote, pensado para gateways.
+ * 
+ * Usa el mismo JwtDecoder que protege los endpoints del servicio (firma, issuer,
+ * expiración y caché de tokens verificados) y valida los tokens del lote en paralelo
+ * en un pool dedicado (tokenValidationExecutor).
+ */
+@Service
+@Slf4j
+public class TokenValidationService {
+
+    private final JwtDecoder jwtDecoder;
+    private final KeycloakClaimsExtractor claimsExtractor;
+    private final Executor executor;
+    private final int maxBatchSize;
+
+    public TokenValidationService(JwtDecoder jwtDecoder,
+                                  KeycloakClaimsExtractor claimsExtractor,
+                                  @Qualifier("tokenValidationExecutor") Executor executor,
+                                  @Value("${security.jwt.validation.max-batch-size:1000}") int maxBatchSize) {
+        this.jwtDecoder = jwtDecoder;
+        this.claimsExtractor = claimsExtractor;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Valida todos los tokens y devuelve los resultados en el mismo orden del lote.
+     */
+    public List<TokenValidationResultDTO> validate(List<String> tokens) {
+        requireValidBatchSize(tokens);
+        log.debug("Validando lote de {} tokens", tokens.size());
+        
+        List<CompletableFuture<TokenValidationResultDTO>> futures = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            futures.add(submit(i, tokens.get(i)));
+        }
+        
+        List<TokenValidationResultDTO> results = new ArrayList<>(tokens.size());
+        for (CompletableFuture<TokenValidationResultDTO> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Valida todos los tokens y entrega cada resultado al consumer en cuanto está listo
+     * (orden de finalización; el campo index indica la posición en el lote).
+     * 
+     * El consumer se invoca siempre desde el hilo que llama a este método.
+     */
+    public void validate(List<String> tokens, Consumer<TokenValidationResultDTO> consumer) {
+        requireValidBatchSize(tokens);
+        log.debug("Validando lote de {} tokens (streaming)", tokens.size());
+        
+        BlockingQueue<TokenValidationResultDTO> completed = new LinkedBlockingQueue<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            submit(i, tokens.get(i)).thenAccept(completed::add);
+        }
+        
+        try {
+            for (int i = 0; i < tokens.size(); i++) {
+                consumer.accept(completed.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Validación de tokens interrumpida", e);
+        }
+    }
+
+    /**
+     * Rechaza lotes vacíos o mayores que security.jwt.validation.max-batch-size.
+     */
+    public void requireValidBatchSize(List<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            throw new RuntimeException("Debe enviarse al menos un token");
+        }
+        if (tokens.size() > maxBatchSize) {
+            throw new RuntimeException("El lote excede el máximo de " + maxBatchSize + " tokens");
+        }
+    }
+
+    /**
+     * El futuro siempre termina con un resultado: un fallo que no es del token (decoder,
+     * descarga del JWK Set, revocación...) se entrega como resultado no válido, así
+     * ningún índice del lote se queda sin respuesta.
+     */
+    private CompletableFuture<TokenValidationResultDTO> submit(int index, String token) {
+        return CompletableFuture.supplyAsync(() -> validateOne(index, token), executor)
+                .exceptionally(e -> {
+                    log.warn("Error inesperado al validar el token {} del lote", index, e);
+                    return invalid(index, "Error interno al validar el token");
+                });
+    }
+
+    private TokenValidationResultDTO validateOne(int index, String token) {
+        if (token == null || token.isBlank()) {
+            return invalid(index, "Token vacío");
+        }
+        try {
+            Jwt jwt = jwtDecoder.decode(token);
+            KeycloakClaims claims = claimsExtractor.extract(jwt);
+            return TokenValidationResultDTO.builder()
+                    .index(index)
+                    .valid(true)
+                    .subject(claims.subject())
+                    .expirationTime(jwt.getExpiresAt() != null ? jwt.getExpiresAt().getEpochSecond() : null)
+                    .roles(claims.roles())
+                    .build();
+        } catch (JwtException e) {
+            return invalid(index, e.getMessage());
+        }
+    }
+
+    private static TokenValidationResultDTO invalid(int index, String error) {
+        return TokenValidationResultDTO.builder()
+                .index(index)
+                .valid(false)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.authservice.service;
+
+import com.example.authservice.dto.BulkUserUpdateDTO;
+import com.example.authservice.dto.BulkUserUpdateResultDTO;
+import com.example.authservice.dto.UserPatchDTO;
+import com.example.authservice.exception.ConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Actualización masiva de usuarios (PATCH /users/bulk).
+ *
+ * Cambiar miles de usuarios con PUT /users/{id} supone una petición, una lectura y un UPDATE
+ * por usuario. Aquí, en una sola transacción:
+ * - Activar/desactivar (ids + active) es una sentencia por cada bloque de IDS_PER_STATEMENT IDs
+ * - Los cambios por usuario son un UPDATE parametrizado enviado en batches JDBC de
+ *   users.bulk.batch-size filas (un viaje a la BD por batch)
+ *
+ * No se cargan entidades; los usuarios modificados se invalidan en UserCache.
+ * Si un email ya pertenece a otro usuario, no se aplica ningún cambio (409).
+ */
+@Service
+@Slf4j
+public class UserBulkUpdateService {
+
+    /**
+     * IDs por sentencia "in (...)": acota el tamaño de la sentencia y de su plan.
+     */
+    private static final int IDS_PER_STATEMENT = 1000;
+
+    private static final String SET_ACTIVE_SQL =
+            "update users set active = :active, updated_at = :now where id in (:ids)";
+
+    private static final String PATCH_SQL =
+            "update users set email = coalesce(?, email), full_name = coalesce(?, full_name), " +
+            "active = coalesce(?, active), updated_at = ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final UserCache userCache;
+    private final int maxSize;
+    private final int batchSize;
+
+    public UserBulkUpdateService(JdbcTemplate jdbcTemplate,
+                                 NamedParameterJdbcTemplate namedJdbcTemplate,
+                                 UserCache userCache,
+                                 @Value("${users.bulk.max-size:10000}") int maxSize,
+                                 @Value("${users.bulk.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.userCache = userCache;
+        this.maxSize = maxSize;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public BulkUserUpdateResultDTO update(BulkUserUpdateDTO request) {
+        List<Long> ids = request.getIds() == null ? List.of()
+                : new ArrayList<>(new LinkedHashSet<>(request.getIds().stream().filter(Objects::nonNull).toList()));
+        List<UserPatchDTO> patches = request.getUsers() == null ? List.of() : request.getUsers();
+        long requested = (long) ids.size() + patches.size();
+        if (requested == 0) {
+            throw new RuntimeException("La actualización masiva no incluye ningún usuario");
+        }
+        if (requested > maxSize) {
+            throw new RuntimeException("La actualización masiva admite como máximo " + maxSize + " usuarios");
+        }
+        if (!ids.isEmpty() && request.getActive() == null) {
+            throw new RuntimeException("El campo active es obligatorio para actualizar por ids");
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        long updated;
+        try {
+            updated = setActive(ids, request.getActive(), now) + patch(patches, now);
+        } catch (DuplicateKeyException e) {
+            throw new ConflictException("email", "Alguno de los emails ya pertenece a otro usuario");
+        }
+
+        List<Long> changed = new ArrayList<>(ids);
+        patches.forEach(patch -> changed.add(patch.getId()));
+        userCache.evictAll(changed);
+
+        log.info("Actualización masiva: {} de {} usuarios actualizados", updated, requested);
+        return BulkUserUpdateResultDTO.builder()
+                .requested(requested)
+                .updated(updated)
+                .notFound(requested - updated)
+                .build();
+    }
+
+    private long setActive(List<Long> ids, Boolean active, Timestamp now) {
+        long updated = 0;
+        for (int from = 0; from < ids.size(); from += IDS_PER_STATEMENT) {
+            updated += namedJdbcTemplate.update(SET_ACTIVE_SQL, new MapSqlParameterSource()
+                    .addValue("active", active)
+                    .addValue("now", now)
+                    .addValue("ids", ids.subList(from, Math.min(from + IDS_PER_STATEMENT, ids.size()))));
+        }
+        return updated;
+    }
+
+    private long patch(List<UserPatchDTO> patches, Timestamp now) {
+        if (patches.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(PATCH_SQL, patches, batchSize, (ps, patch) -> {
+            ps.setString(1, patch.getEmail());
+            ps.setString(2, patch.getFullName());
+            ps.setObject(3, patch.getActive(), Types.BOOLEAN);
+            ps.setTimestamp(4, now);
+            ps.setLong(5, patch.getId());
+        });
+        long updated = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Algunos drivers no informan de las filas afectadas por cada sentencia del batch
+                updated += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.authservice.service;
+
+import com.example.authservice.config.ReplicaRoutingDataSource;
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Caché read-through de usuarios por ID (GET /users/{id}).
+ *
+ * Los usuarios se leen constantemente (otros servicios consultan GET /users/{id}) y cambian poco:
+ * - Tamaño máximo users.cache.maximum-size, con desalojo (Caffeine)
+ * - Refresh-ahead: una entrada leída después de users.cache.refresh-after se recarga en
+ *   segundo plano mientras se sigue sirviendo la anterior, así las claves calientes no
+ *   llegan a expirar ni a esperar a la BD
+ * - Las entradas que nadie lee caducan a los users.cache.expire-after: es la máxima
+ *   antigüedad de un dato cambiado por otra instancia o directamente en la BD
+ * - Los usuarios inexistentes no se cachean
+ *
+ * Quien modifica la tabla users invalida los IDs afectados con evict(): en el momento y,
+ * dentro de una transacción, otra vez tras el commit, para que una lectura concurrente
+ * no vuelva a cachear el dato anterior. Publica las métricas cache.* con cache="users.by-id".
+ *
+ * Con réplicas de lectura, un ID invalidado se recarga desde la principal durante
+ * users.cache.primary-read-window: una réplica retrasada devolvería (y la caché guardaría
+ * hasta refresh-after/expire-after) el dato anterior a la escritura. La ventana debe cubrir
+ * datasource.replicas.max-lag más health-check-interval.
+ */
+@Component
+@Slf4j
+public class UserCache {
+
+    static final String CACHE_NAME = "users.by-id";
+
+    private final LoadingCache<Long, UserDTO> usersById;
+    /** IDs invalidados hace menos de primary-read-window */
+    private final Cache<Long, Boolean> recentlyEvicted;
+
+    public UserCache(UserRepository userRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${users.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${users.cache.refresh-after:30s}") Duration refreshAfter,
+                     @Value("${users.cache.expire-after:5m}") Duration expireAfter,
+                     @Value("${users.cache.primary-read-window:15s}") Duration primaryReadWindow) {
+        this.recentlyEvicted = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(primaryReadWindow)
+                .build();
+        this.usersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .recordStats()
+                .build(id -> recentlyEvicted.getIfPresent(id) != null
+                        ? ReplicaRoutingDataSource.onPrimary(() -> userRepository.findDtoById(id)).orElse(null)
+                        : userRepository.findDtoById(id).orElse(null));
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, CACHE_NAME);
+    }
+
+    /**
+     * @return el usuario, de la caché o de la BD; null si no existe
+     */
+    public UserDTO get(Long id) {
+        return usersById.get(id);
+    }
+
+    /**
+     * Invalida un usuario modificado o eliminado.
+     */
+    public void evict(Long id) {
+        recentlyEvicted.put(id, Boolean.TRUE);
+        usersById.invalidate(id);
+        afterCommit(() -> {
+            recentlyEvicted.put(id, Boolean.TRUE);
+            usersById.invalidate(id);
+        });
+    }
+
+    /**
+     * Invalida varios usuarios modificados o eliminados.
+     */
+    public void evictAll(Collection<Long> ids) {
+        ids.forEach(id -> recentlyEvicted.put(id, Boolean.TRUE));
+        usersById.invalidateAll(ids);
+        afterCommit(() -> {
+            ids.forEach(id -> recentlyEvicted.put(id, Boolean.TRUE));
+            usersById.invalidateAll(ids);
+        });
+    }
+
+    private static void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.authservice.service;
+
+import com.example.authservice.config.ReplicaRoutingDataSource;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exportación completa de la tabla users (GET /users/export) en NDJSON o CSV.
+ *
+ * Pensada para volcados de millones de filas con memoria constante:
+ * - Las filas se leen con un cursor JDBC (users.export.fetch-size filas por viaje a la BD)
+ *   dentro de una transacción de solo lectura, necesaria en PostgreSQL para que el driver
+ *   no cargue el resultado entero
+ * - Cada fila se escribe directamente en la respuesta desde el ResultSet, sin entidades
+ *   ni persistence context
+ *
+ * El CSV usa las mismas columnas que acepta POST /users/import, así que una exportación
+ * se puede volver a importar. Los campos con comas, comillas o saltos de línea van entre
+ * comillas (RFC 4180); al importarlos, un "\r\n" o "\r" dentro de un campo se lee como "\n".
+ * Publica users.export.rows, users.export.duration y users.export.throughput (tag "format").
+ */
+@Service
+@Slf4j
+public class UserExportService {
+
+    /**
+     * Formatos de salida.
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private static final String SELECT_SQL =
+            "select id, username, email, full_name, active, provisioning_status, created_at " +
+            "from users order by id";
+
+    private static final String CSV_HEADER = "id,username,email,fullName,active,provisioningStatus,createdAt\n";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong lastThroughput = new AtomicLong();
+
+    public UserExportService(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${users.export.fetch-size:1000}") int fetchSize) {
+        // Cursor de lectura propio: el fetchSize evita cargar la tabla entera en memoria
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("users.export.throughput", lastThroughput, AtomicLong::get)
+                .description("Filas por segundo de la última exportación de usuarios terminada")
+                .baseUnit("rows")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Escribe todos los usuarios, en orden de ID, en el stream indicado.
+     *
+     * @return número de filas exportadas
+     * @throws IOException si falla la escritura (ej: el cliente cerró la conexión)
+     */
+    public long export(OutputStream outputStream, Format format) throws IOException {
+        String formatTag = format.name().toLowerCase(Locale.ROOT);
+        long start = System.nanoTime();
+        String result = "failed";
+        long[] rows = {0};
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                WRITE_BUFFER_SIZE);
+        try {
+            RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+            // En la principal: el cursor dura lo que tarde el cliente en leer la respuesta
+            ReplicaRoutingDataSource.onPrimary(() -> readOnlyTransaction.executeWithoutResult(status ->
+                    cursorJdbcTemplate.query(SELECT_SQL, rs -> {
+                        try {
+                            rowWriter.write(rs);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        rows[0]++;
+                    })));
+            rowWriter.finish();
+            writer.flush();
+            result = "completed";
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            meterRegistry.counter("users.export.rows", "format", formatTag).increment(rows[0]);
+            Timer.builder("users.export.duration")
+                    .description("Duración de las exportaciones de usuarios")
+                    .tags("format", formatTag, "result", result)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long throughput = rows[0] * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1);
+        lastThroughput.set(throughput);
+        log.info("Exportación de usuarios ({}) terminada: {} filas en {} ms ({} filas/s)",
+                format, rows[0], TimeUnit.NANOSECONDS.toMillis(elapsed), throughput);
+        return rows[0];
+    }
+
+    /**
+     * Escribe la fila actual del ResultSet en el formato de salida.
+     */
+    private interface RowWriter {
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        default void finish() throws IOException {
+        }
+    }
+
+    /**
+     * Un objeto JSON por línea, con los mismos campos que UserDTO más createdAt.
+     */
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            // Cada objeto termina con '\n'; sin el separador por defecto (espacio) entre valores raíz
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            generator.writeStringField("username", rs.getString("username"));
+            generator.writeStringField("email", rs.getString("email"));
+            generator.writeStringField("fullName", rs.getString("full_name"));
+            generator.writeBooleanField("active", rs.getBoolean("active"));
+            generator.writeStringField("provisioningStatus", rs.getString("provisioning_status"));
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            generator.writeStringField("createdAt", createdAt != null ? createdAt.toLocalDateTime().toString() : null);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * CSV con cabecera (RFC 4180): comillas dobles solo en los campos que las necesitan.
+     */
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(CSV_HEADER);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong("id")));
+            writer.write(',');
+            writeField(rs.getString("username"));
+            writer.write(',');
+            writeField(rs.getString("email"));
+            writer.write(',');
+            writeField(rs.getString("full_name"));
+            writer.write(',');
+            writer.write(Boolean.toString(rs.getBoolean("active")));
+            writer.write(',');
+            writeField(rs.getString("provisioning_status"));
+            writer.write(',');
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            writeField(createdAt != null ? createdAt.toLocalDateTime().toString() : null);
+            writer.write('\n');
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.example.authservice.service;
+
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.dto.UserImportResultDTO;
+import com.example.authservice.entity.ProvisioningStatus;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserIdSequence;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Importación masiva de usuarios (POST /users/import) desde NDJSON o CSV.
+ *
+ * Importar decenas de miles de usuarios con POST /users supone una petición HTTP por usuario,
+ * con varias consultas a BD y varias llamadas a Keycloak cada una. Aquí el fichero se lee
+ * en streaming, en bloques de users.import.chunk-size filas (memoria constante), y por bloque:
+ * 1. Valida cada fila con las mismas restricciones que UserDTO
+ * 2. Descarta duplicados dentro del bloque y, con una única consulta, los que ya existen en BD
+ * 3. Inserta las filas válidas en users con un batch JDBC (provisioningStatus PENDING)
+ * 4. Crea los usuarios en Keycloak con una llamada a la Partial Import API; si falla,
+ *    registra las altas en el outbox para que las reintente KeycloakProvisioningWorker.
+ *    Los que ya existían en Keycloak se omiten allí y se devuelven como LINKED, sin password
+ * 5. Entrega el resultado de cada fila al consumidor (la respuesta se envía en streaming)
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+    /**
+     * Formatos de entrada aceptados.
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private static final String INSERT_SQL =
+            "insert into users (id, username, email, full_name, active, provisioning_status, created_at) " +
+            "values (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserIdSequence userIdSequence;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final KeycloakService keycloakService;
+    private final KeycloakProvisioningWorker provisioningWorker;
+    private final int chunkSize;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             UserIdSequence userIdSequence,
+                             NamedParameterJdbcTemplate namedJdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             KeycloakService keycloakService,
+                             KeycloakProvisioningWorker provisioningWorker,
+                             @Value("${users.import.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userIdSequence = userIdSequence;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.keycloakService = keycloakService;
+        this.provisioningWorker = provisioningWorker;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Prepara la importación. En CSV lee ya la cabecera, para poder responder 400
+     * antes de empezar el streaming si no es válida (o 503 si Keycloak no está disponible
+     * y keycloak.circuit-breaker.fallback es FAIL_FAST).
+     */
+    public UserImport open(InputStream input, Format format) throws IOException {
+        keycloakService.ensureAvailable(KeycloakService.IMPORT_USERS);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        RowReader rows = format == Format.CSV ? new CsvRowReader(reader) : new NdjsonRowReader(reader);
+        return new UserImport(rows);
+    }
+
+    /**
+     * Importación abierta, lista para procesarse.
+     */
+    public final class UserImport {
+
+        private final RowReader rows;
+
+        private UserImport(RowReader rows) {
+            this.rows = rows;
+        }
+
+        /**
+         * Procesa todo el fichero, entregando los resultados al terminar cada bloque.
+         */
+        public void run(Consumer<UserImportResultDTO> resultConsumer) throws IOException {
+            long created = 0;
+            long total = 0;
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            ImportRow row;
+            while ((row = rows.next()) != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    created += importChunk(chunk, resultConsumer);
+                    total += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                created += importChunk(chunk, resultConsumer);
+                total += chunk.size();
+            }
+            log.info("Importación terminada: {} usuarios creados de {} filas", created, total);
+        }
+    }
+
+    private int importChunk(List<ImportRow> chunk, Consumer<UserImportResultDTO> resultConsumer) {
+        List<UserImportResultDTO> results = new ArrayList<>(chunk.size());
+        List<Candidate> candidates = new ArrayList<>(chunk.size());
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+
+        // 1-2. Validación y duplicados dentro del bloque
+        for (ImportRow row : chunk) {
+            UserImportResultDTO result = UserImportResultDTO.builder()
+                    .line(row.line())
+                    .username(row.user() != null ? row.user().getUsername() : null)
+                    .build();
+            results.add(result);
+            String error = row.parseError() != null ? row.parseError() : validate(row.user());
+            if (error != null) {
+                result.setStatus(UserImportResultDTO.Status.INVALID);
+                result.setError(error);
+            } else if (!usernames.add(row.user().getUsername()) || !emails.add(row.user().getEmail())) {
+                result.setStatus(UserImportResultDTO.Status.DUPLICATE);
+                result.setError("Username o email repetido en el fichero");
+            } else {
+                candidates.add(new Candidate(row.user(), result));
+            }
+        }
+
+        // 2. Duplicados contra la base de datos, en una sola consulta
+        if (!candidates.isEmpty()) {
+            Set<String> existing = findExisting(usernames, emails);
+            candidates.removeIf(candidate -> {
+                boolean duplicate = existing.contains("u:" + candidate.user().getUsername())
+                        || existing.contains("e:" + candidate.user().getEmail());
+                if (duplicate) {
+                    candidate.result().setStatus(UserImportResultDTO.Status.DUPLICATE);
+                    candidate.result().setError("El nombre de usuario o el email ya existen");
+                }
+                return duplicate;
+            });
+        }
+
+        // 3. Inserción en batch
+        List<ImportedUser> inserted = insert(candidates);
+
+        // 4. Alta en Keycloak
+        if (!inserted.isEmpty()) {
+            provision(inserted);
+        }
+
+        results.forEach(resultConsumer);
+        return inserted.size();
+    }
+
+    private String validate(UserDTO user) {
+        Set<ConstraintViolation<UserDTO>> violations = validator.validate(user);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .reduce((a, b) -> a + "; " + b)
+                .orElse(null);
+    }
+
+    private Set<String> findExisting(Set<String> usernames, Set<String> emails) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("usernames", usernames)
+                .addValue("emails", emails);
+        Set<String> existing = new HashSet<>();
+        namedJdbcTemplate.query(
+                "select username, email from users where username in (:usernames) or email in (:emails)",
+                params,
+                rs -> {
+                    existing.add("u:" + rs.getString(1));
+                    existing.add("e:" + rs.getString(2));
+                });
+        return existing;
+    }
+
+    private List<ImportedUser> insert(List<Candidate> candidates) {
+        List<ImportedUser> inserted = new ArrayList<>(candidates.size());
+        if (candidates.isEmpty()) {
+            return inserted;
+        }
+        List<String> passwords = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            passwords.add(UserService.generateTemporaryPassword());
+        }
+
+        List<Long> ids;
+        try {
+            ids = transactionTemplate.execute(status -> insertBatch(candidates));
+        } catch (DataAccessException e) {
+            // Otra petición insertó alguno de estos usuarios entre la comprobación y el batch:
+            // se reintenta fila a fila para aislar los conflictos
+            log.warn("Batch de importación rechazado, reintentando fila a fila: {}", e.getMessage());
+            ids = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                try {
+                    ids.add(transactionTemplate.execute(status -> insertBatch(List.of(candidate)).get(0)));
+                } catch (DataAccessException rowError) {
+                    ids.add(null);
+                    UserImportResultDTO result = candidate.result();
+                    if (rowError instanceof DuplicateKeyException) {
+                        result.setStatus(UserImportResultDTO.Status.DUPLICATE);
+                        result.setError("El nombre de usuario o el email ya existen");
+                    } else {
+                        result.setStatus(UserImportResultDTO.Status.ERROR);
+                        result.setError(rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            Long id = ids.get(i);
+            if (id == null) {
+                continue;
+            }
+            Candidate candidate = candidates.get(i);
+            UserImportResultDTO result = candidate.result();
+            result.setStatus(UserImportResultDTO.Status.CREATED);
+            result.setId(id);
+            result.setTemporaryPassword(passwords.get(i));
+            result.setProvisioningStatus(ProvisioningStatus.PENDING);
+            inserted.add(new ImportedUser(id, candidate.user(), passwords.get(i), result));
+        }
+        return inserted;
+    }
+
+    private List<Long> insertBatch(List<Candidate> rows) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        // IDs reservados de la secuencia por bloques: una consulta para todo el lote
+        List<Long> ids = userIdSequence.next(rows.size());
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                UserDTO user = rows.get(i).user();
+                ps.setLong(1, ids.get(i));
+                ps.setString(2, user.getUsername());
+                ps.setString(3, user.getEmail());
+                ps.setString(4, user.getFullName());
+                ps.setBoolean(5, user.getActive() != null ? user.getActive() : true);
+                ps.setString(6, ProvisioningStatus.PENDING.name());
+                ps.setTimestamp(7, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        return ids;
+    }
+
+    private void provision(List<ImportedUser> inserted) {
+        List<UserDTO> users = inserted.stream().map(ImportedUser::user).toList();
+        List<String> passwords = inserted.stream().map(ImportedUser::temporaryPassword).toList();
+        Map<String, String> created;
+        try {
+            created = keycloakService.importUsers(users, passwords);
+        } catch (RuntimeException e) {
+            log.warn("Partial import en Keycloak fallido; {} altas pasan al outbox: {}", inserted.size(),
+                    e.getMessage());
+            enqueue(inserted, true);
+            return;
+        }
+
+        // Keycloak guarda los usernames en minúsculas
+        Set<String> added = new HashSet<>();
+        created.keySet().forEach(username -> added.add(username.toLowerCase(Locale.ROOT)));
+        List<ImportedUser> completed = new ArrayList<>(inserted.size());
+        List<ImportedUser> linked = new ArrayList<>();
+        for (ImportedUser user : inserted) {
+            (added.contains(user.user().getUsername().toLowerCase(Locale.ROOT)) ? completed : linked).add(user);
+        }
+
+        if (!completed.isEmpty()) {
+            namedJdbcTemplate.update("update users set provisioning_status = :status where id in (:ids)",
+                    new MapSqlParameterSource()
+                            .addValue("status", ProvisioningStatus.COMPLETED.name())
+                            .addValue("ids", completed.stream().map(ImportedUser::id).toList()));
+            completed.forEach(user -> user.result().setProvisioningStatus(ProvisioningStatus.COMPLETED));
+        }
+        if (!linked.isEmpty()) {
+            // Ya existían en Keycloak (SKIP): conservan su password, así que la temporal no se
+            // devuelve, y el outbox les asigna el rol USER como en un alta repetida
+            log.info("{} usuarios importados ya existían en Keycloak; se vinculan sin cambiar su password",
+                    linked.size());
+            linked.forEach(user -> {
+                user.result().setStatus(UserImportResultDTO.Status.LINKED);
+                user.result().setTemporaryPassword(null);
+            });
+            enqueue(linked, false);
+        }
+    }
+
+    /**
+     * Registra las altas en el outbox para que las complete KeycloakProvisioningWorker.
+     *
+     * @param withPassword false para usuarios que ya existen en Keycloak (no se envía password)
+     */
+    private void enqueue(List<ImportedUser> users, boolean withPassword) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (ImportedUser user : users) {
+                provisioningWorker.enqueueCreate(User.builder()
+                        .id(user.id())
+                        .username(user.user().getUsername())
+                        .email(user.user().getEmail())
+                        .fullName(user.user().getFullName())
+                        .active(user.user().getActive() != null ? user.user().getActive() : true)
+                        .build(), withPassword ? user.temporaryPassword() : null);
+            }
+        });
+    }
+
+    /**
+     * Fila leída del fichero: el usuario, o el motivo por el que no se pudo leer.
+     */
+    private record ImportRow(long line, UserDTO user, String parseError) {
+    }
+
+    /**
+     * Fila válida pendiente de insertar, con su resultado.
+     */
+    private record Candidate(UserDTO user, UserImportResultDTO result) {
+    }
+
+    private record ImportedUser(Long id, UserDTO user, String temporaryPassword, UserImportResultDTO result) {
+    }
+
+    private interface RowReader {
+        /**
+         * @return la siguiente fila, o null al final del fichero
+         */
+        ImportRow next() throws IOException;
+    }
+
+    /**
+     * Un objeto JSON (UserDTO) por línea; las líneas vacías se ignoran.
+     */
+    private final class NdjsonRowReader implements RowReader {
+
+        private final BufferedReader reader;
+        private long lineNumber;
+
+        private NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    return new ImportRow(lineNumber, objectMapper.readValue(line, UserDTO.class), null);
+                } catch (IOException e) {
+                    return new ImportRow(lineNumber, null, "JSON inválido");
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV con cabecera (username, email, fullName o full_name, active), separado por comas
+     * y con comillas dobles opcionales (RFC 4180). Un campo entre comillas puede contener
+     * saltos de línea (como los que escribe GET /users/export); se leen como '\n'.
+     */
+    private static final class CsvRowReader implements RowReader {
+
+        /**
+         * Líneas físicas que puede ocupar una fila: acota lo que consume una comilla sin cerrar.
+         */
+        private static final int MAX_RECORD_LINES = 100;
+
+        private final BufferedReader reader;
+        private final int usernameColumn;
+        private final int emailColumn;
+        private final int fullNameColumn;
+        private final int activeColumn;
+        private long lineNumber;
+
+        private CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            String header = reader.readLine();
+            lineNumber = 1;
+            if (header == null) {
+                throw new RuntimeException("El fichero CSV está vacío");
+            }
+            if (!header.isEmpty() && header.charAt(0) == '\uFEFF') {
+                header = header.substring(1);
+            }
+            List<String> columns = parseLine(header);
+            this.usernameColumn = indexOf(columns, "username");
+            this.emailColumn = indexOf(columns, "email");
+            this.fullNameColumn = Math.max(indexOf(columns, "fullname"), indexOf(columns, "full_name"));
+            this.activeColumn = indexOf(columns, "active");
+            if (usernameColumn < 0 || emailColumn < 0) {
+                throw new RuntimeException("La cabecera CSV debe incluir las columnas username y email");
+            }
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                long firstLine = lineNumber;
+                List<String> fields = parseLine(line);
+                // Comillas abiertas: el campo sigue en la línea siguiente
+                for (int lines = 1; fields == null && lines < MAX_RECORD_LINES; lines++) {
+                    String continuation = reader.readLine();
+                    if (continuation == null) {
+                        break;
+                    }
+                    lineNumber++;
+                    line = line + '\n' + continuation;
+                    fields = parseLine(line);
+                }
+                if (fields == null) {
+                    return new ImportRow(firstLine, null, "Comillas sin cerrar");
+                }
+                String active = field(fields, activeColumn);
+                UserDTO user = UserDTO.builder()
+                        .username(field(fields, usernameColumn))
+                        .email(field(fields, emailColumn))
+                        .fullName(field(fields, fullNameColumn))
+                        .active(active == null ? null : Boolean.parseBoolean(active))
+                        .build();
+                return new ImportRow(firstLine, user, null);
+            }
+            return null;
+        }
+
+        private static int indexOf(List<String> columns, String name) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).trim().toLowerCase(Locale.ROOT).equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String field(List<String> fields, int column) {
+            if (column < 0 || column >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(column).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        /**
+         * @return los campos de la fila, o null si tiene comillas sin cerrar
+         */
+        private static List<String> parseLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
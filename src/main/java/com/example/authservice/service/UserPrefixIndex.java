@@ -0,0 +1,141 @@
+package com.example.authservice.service;
+
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Índice en memoria por prefijo de username, email y nombre completo, para el autocompletado
+ * de GET /users/search?prefix=true sin ir a la BD (opcional: users.search.prefix-index.enabled).
+ *
+ * - Cada campo, en minúsculas, es la clave de un mapa ordenado: buscar un prefijo es recorrer
+ *   un subMap hasta completar el límite
+ * - El índice se reconstruye entero cada users.search.prefix-index.refresh-interval y se
+ *   sustituye de una vez; las búsquedas nunca esperan a la recarga
+ * - Un usuario creado, modificado o eliminado tarda como máximo ese intervalo en verse
+ *
+ * Ocupa unas tres entradas por usuario (solo las columnas de UserDTO). Publica
+ * users.search.prefix-index.users.
+ */
+@Component
+@Slf4j
+public class UserPrefixIndex {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    /**
+     * Separa el valor del ID en las claves: dos usuarios con el mismo nombre no se pisan,
+     * y '\0' ordena el valor exacto antes que cualquier valor más largo.
+     */
+    private static final char KEY_SEPARATOR = '\0';
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+
+    /** null hasta la primera carga */
+    private volatile Snapshot snapshot;
+
+    public UserPrefixIndex(UserRepository userRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${users.search.prefix-index.enabled:false}") boolean enabled) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        Gauge.builder("users.search.prefix-index.users", this,
+                        index -> index.snapshot != null ? index.snapshot.users() : 0)
+                .description("Usuarios en el índice de prefijos en memoria")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Usuarios cuyo username, email o nombre completo empiezan por el término, en el mismo
+     * orden de relevancia que UserRepository.searchByPrefix.
+     *
+     * @param term término en minúsculas
+     * @return null si el índice está deshabilitado o todavía no se ha cargado
+     */
+    public List<UserDTO> search(String term, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        Map<Long, UserDTO> found = new LinkedHashMap<>();
+        collect(current.usernames(), term, limit, found);
+        collect(current.emails(), term, limit, found);
+        collect(current.fullNames(), term, limit, found);
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Recarga el índice completo (la primera vez, al arrancar).
+     */
+    @Scheduled(fixedDelayString = "${users.search.prefix-index.refresh-interval:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        NavigableMap<String, UserDTO> usernames = new TreeMap<>();
+        NavigableMap<String, UserDTO> emails = new TreeMap<>();
+        NavigableMap<String, UserDTO> fullNames = new TreeMap<>();
+        long afterId = 0;
+        int users = 0;
+        List<UserDTO> page;
+        do {
+            page = userRepository.findPageAfter(afterId, Limit.of(LOAD_PAGE_SIZE));
+            for (UserDTO user : page) {
+                put(usernames, user.getUsername(), user);
+                put(emails, user.getEmail(), user);
+                put(fullNames, user.getFullName(), user);
+                afterId = user.getId();
+            }
+            users += page.size();
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        snapshot = new Snapshot(Collections.unmodifiableNavigableMap(usernames),
+                Collections.unmodifiableNavigableMap(emails),
+                Collections.unmodifiableNavigableMap(fullNames),
+                users);
+        log.debug("Índice de prefijos de usuarios recargado: {} usuarios en {} ms",
+                users, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void put(NavigableMap<String, UserDTO> map, String value, UserDTO user) {
+        if (value != null) {
+            map.put(value.toLowerCase(Locale.ROOT) + KEY_SEPARATOR + user.getId(), user);
+        }
+    }
+
+    private static void collect(NavigableMap<String, UserDTO> map, String term, int limit, Map<Long, UserDTO> found) {
+        if (found.size() >= limit) {
+            return;
+        }
+        for (UserDTO user : map.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+            found.putIfAbsent(user.getId(), user);
+            if (found.size() >= limit) {
+                return;
+            }
+        }
+    }
+
+    private record Snapshot(NavigableMap<String, UserDTO> usernames,
+                            NavigableMap<String, UserDTO> emails,
+                            NavigableMap<String, UserDTO> fullNames,
+                            int users) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.authservice.service;
+
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda de usuarios por username, email o nombre completo (GET /users/search).
+ *
+ * - Sin distinguir mayúsculas; resultados por relevancia (ver UserRepository.SEARCH_RANK)
+ *   y limitados a users.search.max-limit
+ * - Por prefijo: índices btree lower(...) en PostgreSQL o, si está habilitado, UserPrefixIndex
+ *   en memoria (autocompletado sin ir a la BD)
+ * - Por subcadena: índices de trigramas en PostgreSQL. Con menos de MIN_SUBSTRING_LENGTH
+ *   caracteres no hay trigramas que usar y se busca solo por prefijo
+ *
+ * Publica users.search.duration (tags "match" y "source").
+ */
+@Service
+@Slf4j
+public class UserSearchService {
+
+    /**
+     * Longitud mínima del término para buscar por subcadena (pg_trgm indexa trigramas).
+     */
+    static final int MIN_SUBSTRING_LENGTH = 3;
+
+    private static final int MAX_TERM_LENGTH = 255;
+
+    private final UserRepository userRepository;
+    private final UserPrefixIndex prefixIndex;
+    private final MeterRegistry meterRegistry;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public UserSearchService(UserRepository userRepository,
+                             UserPrefixIndex prefixIndex,
+                             MeterRegistry meterRegistry,
+                             @Value("${users.search.default-limit:20}") int defaultLimit,
+                             @Value("${users.search.max-limit:100}") int maxLimit) {
+        this.userRepository = userRepository;
+        this.prefixIndex = prefixIndex;
+        this.meterRegistry = meterRegistry;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @param query texto a buscar
+     * @param limit máximo de resultados; null para el por defecto, limitado a users.search.max-limit
+     * @param prefixOnly true para buscar solo por prefijo (autocompletado)
+     */
+    public List<UserDTO> search(String query, Integer limit, boolean prefixOnly) {
+        String term = query == null ? "" : query.strip().toLowerCase(Locale.ROOT);
+        if (term.isEmpty()) {
+            throw new RuntimeException("El parámetro q es obligatorio");
+        }
+        if (term.length() > MAX_TERM_LENGTH) {
+            throw new RuntimeException("El parámetro q admite como máximo " + MAX_TERM_LENGTH + " caracteres");
+        }
+        int maxResults = limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+        boolean prefix = prefixOnly || term.length() < MIN_SUBSTRING_LENGTH;
+        long start = System.nanoTime();
+
+        String source = "memory";
+        List<UserDTO> users = prefix ? prefixIndex.search(term, maxResults) : null;
+        if (users == null) {
+            source = "database";
+            String escaped = escapeLike(term);
+            users = prefix
+                    ? userRepository.searchByPrefix(term, escaped + "%", Limit.of(maxResults))
+                    : userRepository.searchBySubstring(term, escaped + "%", "%" + escaped + "%", Limit.of(maxResults));
+        }
+
+        Timer.builder("users.search.duration")
+                .description("Duración de las búsquedas de usuarios")
+                .tags("match", prefix ? "prefix" : "substring", "source", source)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Búsqueda de usuarios '{}' ({}, {}): {} resultados",
+                term, prefix ? "prefijo" : "subcadena", source, users.size());
+        return users;
+    }
+
+    /**
+     * Escapa los comodines de LIKE con '!', el carácter de escape de las consultas de búsqueda.
+     */
+    private static String escapeLike(String term) {
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
@@ -2,21 +2,34 @@ package com.example.authservice.service;
 
 import com.example.authservice.dto.UserCreateResponseDTO;
 import com.example.authservice.dto.UserDTO;
+import com.example.authservice.dto.UserPageDTO;
+import com.example.authservice.entity.ProvisioningStatus;
 import com.example.authservice.entity.User;
+import com.example.authservice.exception.ConflictException;
 import com.example.authservice.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
 
 /**
  * Servicio para la lógica de negocio relacionada con usuarios.
  * 
  * Esta capa contiene la lógica de negocio y actúa como intermediario
  * entre los controladores y los repositorios.
+ * 
+ * Las escrituras usan la transacción de la clase; las lecturas, transacciones de solo lectura
+ * (o ninguna, si el dato está en UserCache) con proyecciones a UserDTO, sin cargar entidades.
  */
 @Service
 @RequiredArgsConstructor
@@ -25,20 +38,58 @@ import java.util.stream.Collectors;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final KeycloakProvisioningWorker provisioningWorker;
     private final KeycloakService keycloakService;
+    private final UserCache userCache;
+
+    @Value("${users.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${users.page.max-size:500}")
+    private int maxPageSize;
+
+    /**
+     * Lista los usuarios por páginas, en orden de ID (paginación keyset).
+     * 
+     * El cursor es opaco para el cliente (codifica el último ID devuelto): cada página
+     * continúa donde terminó la anterior aunque entre medias se creen o borren usuarios.
+     * Se lee un usuario más del tamaño pedido para saber si hay página siguiente.
+     * 
+     * @param cursor valor "next" de la página anterior; null para la primera
+     * @param size tamaño de página; null para el por defecto, limitado a users.page.max-size
+     */
+    @Transactional(readOnly = true)
+    public UserPageDTO getUsers(String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        long afterId = cursor == null || cursor.isBlank() ? 0L : decodeCursor(cursor);
+        log.debug("Obteniendo usuarios con ID > {} (página de {})", afterId, pageSize);
 
-    public List<UserDTO> getAllUsers() {
-        log.debug("Obteniendo todos los usuarios");
-        return userRepository.findAll().stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        List<UserDTO> users = userRepository.findPageAfter(afterId, Limit.of(pageSize + 1));
+        String next = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            next = encodeCursor(users.get(pageSize - 1).getId());
+        }
+        return UserPageDTO.builder()
+                .users(users)
+                .next(next)
+                .build();
     }
 
+    /**
+     * Obtiene un usuario a través de UserCache.
+     * 
+     * Sin transacción propia (SUPPORTS): un acierto de caché no ocupa una conexión a la BD;
+     * un fallo lee el DTO con findDtoById en una transacción de solo lectura.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public UserDTO getUserById(Long id) {
         log.debug("Obteniendo usuario con ID: {}", id);
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
-        return toDTO(user);
+        UserDTO user = userCache.get(id);
+        if (user == null) {
+            throw new RuntimeException("Usuario no encontrado con ID: " + id);
+        }
+        return user;
     }
 
     /**
@@ -46,49 +97,42 @@ public class UserService {
      * 
      * En la industria, este patrón se conoce como "User Provisioning" o "Just-In-Time Provisioning".
      * 
-     * Estrategia de rollback:
-     * - Si falla la creación en Keycloak, se revierte la transacción de BD (gracias a @Transactional)
-     * - Si falla la creación en BD, Keycloak no se crea (no hay rollback de Keycloak, pero es aceptable)
+     * Transactional outbox:
+     * - El usuario y la operación de alta en Keycloak se guardan en la misma transacción
+     *   (tablas users y provisioning_outbox): o se confirman ambos o ninguno
+     * - KeycloakProvisioningWorker crea el usuario en Keycloak en segundo plano, con reintentos;
+     *   la petición no espera a la llamada remota
+     * - provisioningStatus indica si el alta en Keycloak terminó (PENDING, COMPLETED, FAILED)
      * 
      * Mejores prácticas implementadas:
      * - Transaccionalidad: @Transactional asegura atomicidad en BD
      * - Password temporal: Se genera automáticamente, requiere cambio en primer login
      * - Idempotencia: Si el usuario ya existe en Keycloak, no falla
      * - Logging: Se registran todos los pasos para auditoría
+     * - Unicidad: username y email los garantizan las restricciones únicas de la tabla,
+     *   sin consultas previas (ver saveUnique)
      * 
      * @return UserCreateResponseDTO con el usuario creado y el password temporal
      */
     public UserCreateResponseDTO createUser(UserDTO userDTO) {
         log.debug("Creando nuevo usuario: {}", userDTO.getUsername());
         
-        if (userRepository.existsByUsername(userDTO.getUsername())) {
-            throw new RuntimeException("El nombre de usuario ya existe: " + userDTO.getUsername());
-        }
-        
-        if (userRepository.existsByEmail(userDTO.getEmail())) {
-            throw new RuntimeException("El email ya existe: " + userDTO.getEmail());
-        }
+        // Con Keycloak caído y fallback FAIL_FAST, 503 en lugar de dejar el alta pendiente
+        keycloakService.ensureAvailable(KeycloakService.CREATE_USER);
 
         // Generar password temporal (en producción, esto se enviaría por email)
         String temporaryPassword = generateTemporaryPassword();
         log.info("Password temporal generado para usuario '{}': {}", userDTO.getUsername(), temporaryPassword);
         
-        // 1. Crear usuario en Keycloak primero (si falla, la transacción se revierte)
-        try {
-            keycloakService.createUserInKeycloak(userDTO, temporaryPassword);
-            log.info("Usuario '{}' creado en Keycloak", userDTO.getUsername());
-        } catch (Exception e) {
-            log.error("Error creando usuario en Keycloak, revirtiendo operación", e);
-            throw new RuntimeException("Error al crear usuario en Keycloak: " + e.getMessage(), e);
-        }
-
-        // 2. Crear usuario en base de datos local
-        // Si esto falla, el usuario ya está en Keycloak, pero es aceptable
-        // (en producción, podrías implementar un job de limpieza)
+        // 1. Crear usuario en base de datos local, pendiente de aprovisionar en Keycloak
         User user = toEntity(userDTO);
-        User savedUser = userRepository.save(user);
+        user.setProvisioningStatus(ProvisioningStatus.PENDING);
+        User savedUser = saveUnique(user);
         log.info("Usuario creado exitosamente con ID: {} en base de datos local", savedUser.getId());
         
+        // 2. Registrar el alta en Keycloak en la misma transacción (outbox)
+        provisioningWorker.enqueueCreate(savedUser, temporaryPassword);
+        
         // TODO: En producción, enviar password temporal por email seguro
         // Ver SECURITY.md para mejoras recomendadas
         
@@ -96,7 +140,8 @@ public class UserService {
         return UserCreateResponseDTO.builder()
                 .user(toDTO(savedUser))
                 .temporaryPassword(temporaryPassword)
-                .message("Usuario creado exitosamente. Este password es temporal y debe ser cambiado en el primer login.")
+                .message("Usuario creado exitosamente. Este password es temporal y debe ser cambiado en el primer login. " +
+                        "El alta en Keycloak se completa en segundo plano (ver provisioningStatus).")
                 .build();
     }
     
@@ -108,7 +153,7 @@ public class UserService {
      * - Implementar políticas de password más estrictas
      * - Enviar password por email seguro en lugar de retornarlo en la respuesta
      */
-    private String generateTemporaryPassword() {
+    static String generateTemporaryPassword() {
         // Generar password temporal de 12 caracteres
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%";
         StringBuilder password = new StringBuilder();
@@ -119,23 +164,16 @@ public class UserService {
         return password.toString();
     }
 
+    /**
+     * Actualiza un usuario: una lectura por ID y un UPDATE. Un username o email que ya
+     * pertenece a otro usuario se rechaza con 409 (ver saveUnique).
+     */
     public UserDTO updateUser(Long id, UserDTO userDTO) {
         log.debug("Actualizando usuario con ID: {}", id);
         
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
 
-        // Verificar si el username o email ya existen en otro usuario
-        if (!user.getUsername().equals(userDTO.getUsername()) && 
-            userRepository.existsByUsername(userDTO.getUsername())) {
-            throw new RuntimeException("El nombre de usuario ya existe: " + userDTO.getUsername());
-        }
-        
-        if (!user.getEmail().equals(userDTO.getEmail()) && 
-            userRepository.existsByEmail(userDTO.getEmail())) {
-            throw new RuntimeException("El email ya existe: " + userDTO.getEmail());
-        }
-
         user.setUsername(userDTO.getUsername());
         user.setEmail(userDTO.getEmail());
         user.setFullName(userDTO.getFullName());
@@ -143,7 +181,8 @@ public class UserService {
             user.setActive(userDTO.getActive());
         }
 
-        User updatedUser = userRepository.save(user);
+        User updatedUser = saveUnique(user);
+        userCache.evict(id);
         log.info("Usuario actualizado exitosamente con ID: {}", updatedUser.getId());
         return toDTO(updatedUser);
     }
@@ -151,30 +190,73 @@ public class UserService {
     /**
      * Elimina un usuario de ambos sistemas.
      * 
-     * Estrategia: Eliminar primero de BD local, luego de Keycloak.
-     * Si falla Keycloak, el usuario ya no está en BD (aceptable para evitar inconsistencias).
+     * Estrategia: Eliminar de BD local y registrar la baja en Keycloak en la misma transacción (outbox).
+     * KeycloakProvisioningWorker elimina el usuario de Keycloak en segundo plano, con reintentos,
+     * y revoca sus access tokens vigentes (ver TokenRevocationService).
      */
     public void deleteUser(Long id) {
         log.debug("Eliminando usuario con ID: {}", id);
         
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+        keycloakService.ensureAvailable(KeycloakService.DELETE_USER);
         
-        String username = user.getUsername();
-        
-        // 1. Eliminar de base de datos local primero
-        userRepository.deleteById(id);
-        log.info("Usuario '{}' eliminado de base de datos local", username);
+        userRepository.delete(user);
+        userCache.evict(id);
+        provisioningWorker.enqueueDelete(user);
         
-        // 2. Eliminar de Keycloak (no crítico si falla)
+        log.info("Usuario eliminado exitosamente con ID: {} (baja en Keycloak pendiente)", id);
+    }
+
+    /**
+     * Guarda el usuario y ejecuta el INSERT/UPDATE en el momento (flush).
+     * 
+     * Las restricciones únicas de username y email son la única comprobación: sin consultas
+     * previas (un viaje a la BD menos por campo) y sin la carrera entre la comprobación y
+     * la escritura cuando dos peticiones usan el mismo valor a la vez.
+     * 
+     * @throws ConflictException si el username o el email ya pertenecen a otro usuario
+     */
+    private User saveUnique(User user) {
         try {
-            keycloakService.deleteUserFromKeycloak(username);
-        } catch (Exception e) {
-            log.warn("No se pudo eliminar usuario '{}' de Keycloak (continuando)", username, e);
-            // No lanzamos excepción, el usuario ya fue eliminado de BD
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String constraint = violatedConstraint(e);
+            if (constraint.contains(User.USERNAME_CONSTRAINT)) {
+                throw new ConflictException("username", "El nombre de usuario ya existe: " + user.getUsername());
+            }
+            if (constraint.contains(User.EMAIL_CONSTRAINT)) {
+                throw new ConflictException("email", "El email ya existe: " + user.getEmail());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Nombre de la restricción violada, en minúsculas. Si Hibernate no lo extrae, el mensaje
+     * del driver (H2 lo incluye en mayúsculas junto al índice).
+     */
+    private static String violatedConstraint(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT);
+            }
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null ? message.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static String encodeCursor(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Cursor de paginación inválido: " + cursor);
         }
-        
-        log.info("Usuario eliminado exitosamente con ID: {}", id);
     }
 
     private UserDTO toDTO(User user) {
@@ -184,6 +266,7 @@ public class UserService {
                 .email(user.getEmail())
                 .fullName(user.getFullName())
                 .active(user.getActive())
+                .provisioningStatus(user.getProvisioningStatus())
                 .build();
     }
 
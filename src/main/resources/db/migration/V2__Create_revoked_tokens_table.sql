@@ -0,0 +1,17 @@
+-- Migration: Create revoked_tokens table
+-- Description: Token revocations (by jti or by subject) shared between replicas
+
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    id BIGSERIAL PRIMARY KEY,
+    jti VARCHAR(255),
+    subject VARCHAR(255),
+    expires_at BIGINT NOT NULL,
+    revoked_at BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT chk_revoked_tokens_target CHECK (jti IS NOT NULL OR subject IS NOT NULL)
+);
+
+-- Replicas poll incrementally by id; expired rows are purged by expires_at
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens(expires_at);
+
+COMMENT ON TABLE revoked_tokens IS 'Token revocations polled by every replica of the authentication service';
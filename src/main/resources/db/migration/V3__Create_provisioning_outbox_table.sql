@@ -0,0 +1,24 @@
+-- Migration: Create provisioning_outbox table
+-- Description: Keycloak operations written in the same transaction as the users row (transactional outbox)
+
+ALTER TABLE users ADD COLUMN provisioning_status VARCHAR(20) NOT NULL DEFAULT 'COMPLETED';
+
+CREATE TABLE IF NOT EXISTS provisioning_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    operation VARCHAR(20) NOT NULL,
+    user_id BIGINT NOT NULL,
+    username VARCHAR(50) NOT NULL,
+    payload VARCHAR(4000),
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+-- The worker polls due entries; entries of the same username are processed in id order
+CREATE INDEX IF NOT EXISTS idx_provisioning_outbox_due ON provisioning_outbox(status, next_attempt_at);
+CREATE INDEX IF NOT EXISTS idx_provisioning_outbox_username ON provisioning_outbox(username);
+
+COMMENT ON TABLE provisioning_outbox IS 'Pending Keycloak provisioning operations processed asynchronously';
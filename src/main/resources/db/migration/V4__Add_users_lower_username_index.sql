@@ -0,0 +1,5 @@
+-- Migration: Add ordered index on lower(username)
+-- Description: Lets the Keycloak reconciliation stream users ordered by lower(username) COLLATE "C"
+--              without sorting the whole table
+
+CREATE INDEX IF NOT EXISTS idx_users_username_lower_c ON users ((lower(username) COLLATE "C"));
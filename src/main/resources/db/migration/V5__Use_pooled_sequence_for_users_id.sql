@@ -0,0 +1,12 @@
+-- Migration: Use a pooled sequence for users.id
+-- Description: Hibernate reserves 50 IDs per sequence call (allocationSize), so user inserts can be JDBC-batched
+
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 50;
+
+-- Each sequence value N reserves the IDs N-49..N: the first value must leave every existing ID below its block
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) FROM users) + 50, false);
+
+-- Ad-hoc inserts without an ID take the top of a fresh block, which no other writer uses
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_seq');
+ALTER SEQUENCE users_seq OWNED BY users.id;
+DROP SEQUENCE IF EXISTS users_id_seq;
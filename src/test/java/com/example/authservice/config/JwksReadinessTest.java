@@ -0,0 +1,58 @@
+package com.example.authservice.config;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Readiness tras arrancar sin JWK Set (el issuer del perfil test no es accesible).
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DirtiesContext
+class JwksReadinessTest {
+
+    @Autowired
+    private PrefetchingJwkSource jwkSource;
+
+    @Autowired
+    private HealthEndpoint healthEndpoint;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Test
+    void readinessIsOutOfServiceUntilKeysAreLoaded() throws Exception {
+        assertFalse(jwkSource.hasKeys());
+        // Boot pasa a ACCEPTING_TRAFFIC al terminar el arranque; el grupo de readiness no
+        assertEquals(ReadinessState.ACCEPTING_TRAFFIC, applicationAvailability.getReadinessState());
+        assertEquals(Status.OUT_OF_SERVICE, healthEndpoint.healthForPath("readiness").getStatus());
+
+        String jwkSet = new JWKSet(new RSAKeyGenerator(2048).keyID("k1").generate().toPublicJWK()).toString();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(jwkSource.getJwkSetUri())).andRespond(withSuccess(jwkSet, MediaType.APPLICATION_JSON));
+
+        assertTrue(jwkSource.refresh());
+        assertEquals(Status.UP, healthEndpoint.healthForPath("readiness").getStatus());
+    }
+}
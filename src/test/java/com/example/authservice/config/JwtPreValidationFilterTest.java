@@ -0,0 +1,53 @@
+package com.example.authservice.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Búsqueda de claves de JwtPreValidationFilter.check() sobre el JSON del header y del payload.
+ */
+class JwtPreValidationFilterTest {
+
+    private static final long NOW = 1_700_000_000L;
+    private static final String HEADER = "{\"alg\":\"RS256\",\"kid\":\"k1\"}";
+
+    private final JwtPreValidationFilter filter =
+            new JwtPreValidationFilter(List.of("RS256"), Duration.ofSeconds(60), 16384, new SimpleMeterRegistry());
+
+    @Test
+    void ignoresClaimsNestedInObjectsArraysAndStrings() {
+        String payload = "{\"sub\":\"u1\",\"ctx\":{\"exp\":1,\"nbf\":9999999999}," +
+                "\"list\":[{\"exp\":1}],\"note\":\"\\\",\\\"exp\\\":1\",\"exp\":" + (NOW + 300) + "}";
+        assertNull(filter.check(token(HEADER, payload), 0, NOW));
+    }
+
+    @Test
+    void readsTopLevelClaimsAfterNestedObjects() {
+        String payload = "{\"ctx\":{\"exp\":" + (NOW + 300) + "},\"exp\":" + (NOW - 300) + "}";
+        assertEquals(JwtPreValidationFilter.Reason.EXPIRED, filter.check(token(HEADER, payload), 0, NOW));
+
+        String notYetValid = "{\"ctx\":{\"nbf\":1},\"nbf\":" + (NOW + 300) + "}";
+        assertEquals(JwtPreValidationFilter.Reason.NOT_YET_VALID, filter.check(token(HEADER, notYetValid), 0, NOW));
+    }
+
+    @Test
+    void headerKeysMustBeTopLevel() {
+        String nestedKid = "{\"alg\":\"RS256\",\"jwk\":{\"kid\":\"k1\"}}";
+        assertEquals(JwtPreValidationFilter.Reason.MISSING_KID,
+                filter.check(token(nestedKid, "{\"sub\":\"u1\"}"), 0, NOW));
+    }
+
+    private static String token(String header, String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2ln";
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.authservice.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Enrutado de ReplicaRoutingDataSource con dos bases H2 en memoria como principal y réplica.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate primaryJdbc;
+    private JdbcTemplate replicaJdbc;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWriteTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource primary = h2("routing-primary");
+        JdbcDataSource replica = h2("routing-replica");
+        primaryJdbc = new JdbcTemplate(primary);
+        primaryJdbc.execute("create table target (name varchar(20))");
+        primaryJdbc.update("insert into target values ('primary')");
+        replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.execute("create table target (name varchar(20))");
+        replicaJdbc.update("insert into target values ('replica')");
+        replicaJdbc.execute("create table replica_lag (seconds double)");
+        replicaJdbc.update("insert into replica_lag values (0)");
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replica),
+                "select seconds from replica_lag", Duration.ofSeconds(5), new SimpleMeterRegistry());
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primaryJdbc.execute("drop all objects");
+        replicaJdbc.execute("drop all objects");
+    }
+
+    @Test
+    void routesReadOnlyTransactionsToHealthyReplicas() {
+        assertEquals("replica", readTarget(readOnlyTransaction));
+        assertEquals("primary", readTarget(readWriteTransaction));
+        assertEquals("primary", jdbcTemplate.queryForObject("select name from target", String.class));
+
+        // Retraso por encima de max-lag: las lecturas vuelven a la principal
+        replicaJdbc.update("update replica_lag set seconds = 30");
+        routingDataSource.checkReplicas();
+        assertEquals("primary", readTarget(readOnlyTransaction));
+
+        replicaJdbc.update("update replica_lag set seconds = 1");
+        routingDataSource.checkReplicas();
+        assertEquals("replica", readTarget(readOnlyTransaction));
+    }
+
+    @Test
+    void onPrimaryKeepsReadOnlyTransactionsOnThePrimary() {
+        String[] target = new String[1];
+        ReplicaRoutingDataSource.onPrimary(() -> target[0] = readTarget(readOnlyTransaction));
+        assertEquals("primary", target[0]);
+        assertEquals("replica", readTarget(readOnlyTransaction));
+    }
+
+    private String readTarget(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForObject("select name from target", String.class));
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.authservice.service;
+
+import com.example.authservice.entity.RevokedToken;
+import com.example.authservice.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lectura incremental de revoked_tokens con transacciones confirmadas fuera de orden.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TokenRevocationServiceTest {
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void pollsRevocationsCommittedAfterHigherIds() throws Exception {
+        long expiresAt = Instant.now().plusSeconds(3600).getEpochSecond();
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // Otra réplica inserta "late" (id menor) y tarda en confirmar
+        CompletableFuture<Void> slowTransaction = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    revokedTokenRepository.saveAndFlush(revocation("late", expiresAt));
+                    inserted.countDown();
+                    await(commit);
+                }));
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+        revokedTokenRepository.saveAndFlush(revocation("early", expiresAt));
+
+        tokenRevocationService.pollRevocations();
+        assertTrue(tokenRevocationService.isRevoked(jwt("early")));
+        assertFalse(tokenRevocationService.isRevoked(jwt("late")));
+
+        commit.countDown();
+        slowTransaction.get(10, TimeUnit.SECONDS);
+
+        tokenRevocationService.pollRevocations();
+        assertTrue(tokenRevocationService.isRevoked(jwt("late")));
+    }
+
+    private static RevokedToken revocation(String jti, long expiresAt) {
+        return RevokedToken.builder()
+                .jti(jti)
+                .expiresAt(expiresAt)
+                .revokedAt(Instant.now().getEpochSecond())
+                .build();
+    }
+
+    private static Jwt jwt(String jti) {
+        return Jwt.withTokenValue("token-" + jti)
+                .header("alg", "RS256")
+                .jti(jti)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
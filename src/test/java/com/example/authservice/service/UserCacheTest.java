@@ -0,0 +1,47 @@
+package com.example.authservice.service;
+
+import com.example.authservice.config.ReplicaRoutingDataSource;
+import com.example.authservice.dto.UserDTO;
+import com.example.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Origen de las recargas de UserCache con réplicas de lectura.
+ */
+class UserCacheTest {
+
+    @Test
+    void reloadsRecentlyEvictedUsersFromThePrimary() throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        List<Boolean> loadsOnPrimary = new ArrayList<>();
+        when(userRepository.findDtoById(anyLong())).thenAnswer(invocation -> {
+            loadsOnPrimary.add(ReplicaRoutingDataSource.isPrimaryForced());
+            return Optional.of(UserDTO.builder().id(invocation.getArgument(0)).username("ana").build());
+        });
+        UserCache userCache = new UserCache(userRepository, new SimpleMeterRegistry(), 100,
+                Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMillis(200));
+
+        userCache.get(1L);
+        userCache.evict(1L);
+        userCache.get(1L);
+        // Pasada la ventana, las recargas vuelven a poder ir a una réplica
+        userCache.evict(2L);
+        Thread.sleep(300);
+        userCache.get(2L);
+        userCache.evictAll(List.of(1L));
+        userCache.get(1L);
+
+        assertEquals(List.of(false, true, false, true), loadsOnPrimary);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.authservice.service;
+
+import com.example.authservice.dto.UserImportResultDTO;
+import com.example.authservice.entity.User;
+import com.example.authservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Un CSV de GET /users/export se puede volver a importar con POST /users/import,
+ * también con saltos de línea dentro de un campo.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserExportImportTest {
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private KeycloakService keycloakService;
+
+    @Test
+    void csvExportWithMultilineFieldsCanBeImported() throws Exception {
+        String fullName = "Ana María\nLópez, \"Anita\"";
+        User user = userRepository.save(User.builder()
+                .username("multiline")
+                .email("multiline@example.com")
+                .fullName(fullName)
+                .build());
+
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        userExportService.export(exported, UserExportService.Format.CSV);
+        String csv = exported.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains("\"Ana María\nLópez, \"\"Anita\"\"\""));
+
+        userRepository.delete(user);
+        List<UserImportResultDTO> results = new ArrayList<>();
+        userImportService.open(new ByteArrayInputStream(exported.toByteArray()), UserImportService.Format.CSV)
+                .run(results::add);
+
+        UserImportResultDTO result = results.stream()
+                .filter(r -> "multiline".equals(r.getUsername()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(null, result.getError());
+        assertEquals(fullName, userRepository.findByUsername("multiline").orElseThrow().getFullName());
+    }
+}